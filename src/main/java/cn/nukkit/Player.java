@@ -239,8 +239,22 @@ public class Player extends Human implements CommandSender, InventoryHolder, Chu
 
     @Override
     public void spawnTo(Player player) {
-        if (this.spawned && player.spawned && this.isAlive() && player.isAlive() && player.getLevel().equals(this.level) && player.canSee(this) && !this.isSpectator()) {
+        if (this.spawned && player.spawned && this.isAlive() && player.isAlive() && player.getLevel().equals(this.level) && player.canSee(this) && !this.isSpectator()
+                && !this.hasSpawned.containsKey(player.getLoaderId()) && this.level.getPlayerVisibility().canSpawnPlayer(player)) {
             super.spawnTo(player);
+            if (this.hasSpawned.containsKey(player.getLoaderId())) {
+                this.level.getPlayerVisibility().onPlayerSpawned(player);
+            }
+        }
+    }
+
+    @Override
+    public void despawnFrom(Player player) {
+        if (this.hasSpawned.containsKey(player.getLoaderId())) {
+            super.despawnFrom(player);
+            if (player.getLevel() != null) {
+                player.getLevel().getPlayerVisibility().onPlayerDespawned(player);
+            }
         }
     }
 
@@ -1065,7 +1079,7 @@ public class Player extends Human implements CommandSender, InventoryHolder, Chu
             bb.maxY = bb.minY + 0.5;
             bb.minY -= 1;
 
-            this.onGround = this.level.getCollisionBlocks(bb, true).length > 0;
+            this.onGround = this.level.hasCollisionBlocks(bb);
         }
         this.isCollided = this.onGround;
     }
@@ -2325,7 +2339,8 @@ public class Player extends Human implements CommandSender, InventoryHolder, Chu
                         }
                     };
 
-                    if (!this.canInteract(targetEntity, 8)) {
+                    //Entities behind blocks can only be hit from close by
+                    if (!this.canInteract(targetEntity, this.hasLineOfSight(targetEntity) ? 8 : 3)) {
                         cancelled = true;
                     } else if (targetEntity instanceof Player) {
                         if ((((Player) targetEntity).getGamemode() & 0x01) > 0) {
@@ -3011,41 +3026,6 @@ public class Player extends Human implements CommandSender, InventoryHolder, Chu
         }
     }
 
-    @Override
-    protected void checkChunks() {
-        if (this.chunk == null || (this.chunk.getX() != ((int) this.x >> 4) || this.chunk.getZ() != ((int) this.z >> 4))) {
-            if (this.chunk != null) {
-                this.chunk.removeEntity(this);
-            }
-            this.chunk = this.level.getChunk((int) this.x >> 4, (int) this.z >> 4, true);
-
-            if (!this.justCreated) {
-                Map<Integer, Player> newChunk = this.level.getChunkPlayers((int) this.x >> 4, (int) this.z >> 4);
-                newChunk.remove(this.getLoaderId());
-
-                //List<Player> reload = new ArrayList<>();
-                for (Player player : new ArrayList<>(this.hasSpawned.values())) {
-                    if (!newChunk.containsKey(player.getLoaderId())) {
-                        this.despawnFrom(player);
-                    } else {
-                        newChunk.remove(player.getLoaderId());
-                        //reload.add(player);
-                    }
-                }
-
-                for (Player player : newChunk.values()) {
-                    this.spawnTo(player);
-                }
-            }
-
-            if (this.chunk == null) {
-                return;
-            }
-
-            this.chunk.addEntity(this);
-        }
-    }
-
     protected boolean checkTeleportPosition() {
         if (this.teleportPosition != null) {
             int chunkX = (int) this.teleportPosition.x >> 4;
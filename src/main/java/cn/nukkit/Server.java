@@ -295,6 +295,8 @@ public class Server {
         this.alwaysTickPlayers = (boolean) this.getConfig("level-settings.always-tick-players", false);
         this.baseTickRate = (int) this.getConfig("level-settings.base-tick-rate", 1);
 
+        Anvil.PALETTED_SECTIONS = (boolean) this.getConfig("level-settings.paletted-chunk-sections", false);
+
         this.scheduler = new ServerScheduler();
 
         this.entityMetadata = new EntityMetadataStore();
@@ -242,6 +242,19 @@ public class Block extends Position implements Metadatable, Cloneable {
     public static boolean[] solid = null;
     public static double[] hardness = null;
     public static boolean[] transparent = null;
+    /**
+     * Bounding box of every block state (id << 4 | meta) placed at 0, 0, 0, shared by all blocks of that state.
+     * Null if the state has no box, or if its box depends on the neighbours (see {@link #dynamicBoundingBox}).
+     */
+    public static AxisAlignedBB[] boundingBoxes = null;
+    public static boolean[] dynamicBoundingBox = null;
+    public static boolean[] passThrough = null;
+    public static boolean[] flowable = null;
+    public static double[] resistance = null;
+    /**
+     * Whether the class of a block id overrides {@link #onUpdate(int)}, so updates of other ids can be skipped.
+     */
+    public static boolean[] hasUpdateHandler = null;
 
     protected int id;
     protected int meta = 0;
@@ -468,6 +481,39 @@ public class Block extends Position implements Metadatable, Cloneable {
                     }
                 }
             }
+
+            hasUpdateHandler = new boolean[256];
+            for (int id = 0; id < 256; ++id) {
+                Class c = list[id];
+                if (c != null) {
+                    try {
+                        hasUpdateHandler[id] = c.getMethod("onUpdate", int.class).getDeclaringClass() != Block.class;
+                    } catch (NoSuchMethodException e) {
+                        hasUpdateHandler[id] = true;
+                    }
+                }
+            }
+
+            boundingBoxes = new AxisAlignedBB[4096];
+            dynamicBoundingBox = new boolean[256];
+            passThrough = new boolean[4096];
+            flowable = new boolean[4096];
+            resistance = new double[4096];
+            for (int fullId = 0; fullId < 4096; ++fullId) {
+                Block block = fullList[fullId];
+                if (block == null) {
+                    continue;
+                }
+                passThrough[fullId] = block.canPassThrough();
+                flowable[fullId] = block.canBeFlowedInto();
+                resistance[fullId] = block.getResistance();
+                if (block.hasDynamicBoundingBox()) {
+                    dynamicBoundingBox[fullId >> 4] = true;
+                } else {
+                    //Computed on a copy, so the cached box of the shared instance stays unset
+                    boundingBoxes[fullId] = block.clone().getBoundingBox();
+                }
+            }
         }
     }
 
@@ -583,6 +629,13 @@ public class Block extends Position implements Metadatable, Cloneable {
         return false;
     }
 
+    /**
+     * Whether the bounding box depends on more than the id and meta, like the connections of a wall.
+     */
+    public boolean hasDynamicBoundingBox() {
+        return false;
+    }
+
     public String getName() {
         return "Unknown";
     }
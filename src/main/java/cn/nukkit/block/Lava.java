@@ -59,7 +59,7 @@ public class Lava extends Liquid {
     @Override
     public boolean place(Item item, Block block, Block target, int face, double fx, double fy, double fz, Player player) {
         boolean ret = this.getLevel().setBlock(this, this, true, false);
-        this.getLevel().scheduleUpdate(this, this.tickRate());
+        this.getLevel().getLiquidFlow().scheduleUpdate(this, this.tickRate());
 
         return ret;
     }
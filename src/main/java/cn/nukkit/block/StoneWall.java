@@ -26,6 +26,11 @@ public class StoneWall extends Transparent {
         return false;
     }
 
+    @Override
+    public boolean hasDynamicBoundingBox() {
+        return true;
+    }
+
     @Override
     public double getHardness() {
         return 2;
@@ -0,0 +1,124 @@
+package cn.nukkit.command.defaults;
+
+import cn.nukkit.Player;
+import cn.nukkit.command.CommandSender;
+import cn.nukkit.event.TranslationContainer;
+import cn.nukkit.level.ChunkPregenerator;
+import cn.nukkit.level.Level;
+import cn.nukkit.math.NukkitMath;
+import cn.nukkit.utils.TextFormat;
+
+public class PregenCommand extends VanillaCommand {
+
+    public PregenCommand(String name) {
+        super(name, "%nukkit.command.pregen.description", "%nukkit.command.pregen.usage");
+        this.setPermission("nukkit.command.pregen");
+    }
+
+    @Override
+    public boolean execute(CommandSender sender, String commandLabel, String[] args) {
+        if (!this.testPermission(sender)) {
+            return true;
+        }
+
+        if (args.length == 0) {
+            sender.sendMessage(new TranslationContainer("commands.generic.usage", this.usageMessage));
+            return false;
+        }
+
+        Level level;
+        ChunkPregenerator pregenerator;
+        switch (args[0].toLowerCase()) {
+            case "start":
+                if (args.length < 2) {
+                    sender.sendMessage(new TranslationContainer("commands.generic.usage", this.usageMessage));
+                    return false;
+                }
+                if ((level = this.getLevel(sender, args, 2)) == null) {
+                    return true;
+                }
+
+                int radius;
+                try {
+                    radius = Integer.valueOf(args[1]);
+                } catch (NumberFormatException e) {
+                    sender.sendMessage(TextFormat.RED + "Invalid radius: " + args[1]);
+                    return true;
+                }
+
+                pregenerator = new ChunkPregenerator(level, (int) level.getSpawnLocation().getX() >> 4, (int) level.getSpawnLocation().getZ() >> 4, radius);
+                level.startPregeneration(pregenerator);
+                sender.sendMessage("Started pregeneration of " + pregenerator.getTotal() + " chunks in level " + level.getFolderName());
+                return true;
+            case "regions":
+                if (args.length < 3 || (args.length & 1) == 0) {
+                    sender.sendMessage(new TranslationContainer("commands.generic.usage", this.usageMessage));
+                    return false;
+                }
+                if ((level = sender.getServer().getLevelByName(args[1])) == null) {
+                    sender.sendMessage(TextFormat.RED + "Unknown level: " + args[1]);
+                    return true;
+                }
+
+                int[] regions = new int[args.length - 2];
+                try {
+                    for (int i = 2; i < args.length; ++i) {
+                        regions[i - 2] = Integer.valueOf(args[i]);
+                    }
+                } catch (NumberFormatException e) {
+                    sender.sendMessage(TextFormat.RED + "Invalid region coordinates");
+                    return true;
+                }
+
+                pregenerator = new ChunkPregenerator(level, regions);
+                level.startPregeneration(pregenerator);
+                sender.sendMessage("Started pregeneration of " + pregenerator.getTotal() + " chunks in level " + level.getFolderName());
+                return true;
+            case "stop":
+                if ((level = this.getLevel(sender, args, 1)) == null) {
+                    return true;
+                }
+
+                if (level.stopPregeneration()) {
+                    sender.sendMessage("Stopped pregeneration of level " + level.getFolderName());
+                } else {
+                    sender.sendMessage(TextFormat.RED + "No pregeneration is running in level " + level.getFolderName());
+                }
+                return true;
+            case "status":
+                if ((level = this.getLevel(sender, args, 1)) == null) {
+                    return true;
+                }
+
+                pregenerator = level.getPregenerator();
+                if (pregenerator == null) {
+                    sender.sendMessage(TextFormat.RED + "No pregeneration in level " + level.getFolderName());
+                    return true;
+                }
+
+                String state = pregenerator.isFinished() ? "finished" : !pregenerator.isRunning() ? "stopped" : pregenerator.isThrottled() ? "throttled" : "running";
+                sender.sendMessage(TextFormat.GREEN + "---- " + TextFormat.WHITE + "Pregeneration of " + level.getFolderName() + TextFormat.GREEN + " ----");
+                sender.sendMessage(TextFormat.GOLD + "State: " + TextFormat.WHITE + state);
+                sender.sendMessage(TextFormat.GOLD + "Chunks: " + TextFormat.WHITE + pregenerator.getCompleted() + "/" + pregenerator.getTotal() + " (" + NukkitMath.round(pregenerator.getProgress(), 2) + "%)");
+                sender.sendMessage(TextFormat.GOLD + "Pending: " + TextFormat.WHITE + pregenerator.getPending());
+                sender.sendMessage(TextFormat.GOLD + "Speed: " + TextFormat.WHITE + NukkitMath.round(pregenerator.getChunksPerSecond(), 2) + " chunks/s");
+                return true;
+            default:
+                sender.sendMessage(new TranslationContainer("commands.generic.usage", this.usageMessage));
+                return false;
+        }
+    }
+
+    private Level getLevel(CommandSender sender, String[] args, int index) {
+        Level level;
+        if (args.length > index) {
+            level = sender.getServer().getLevelByName(args[index]);
+            if (level == null) {
+                sender.sendMessage(TextFormat.RED + "Unknown level: " + args[index]);
+            }
+        } else {
+            level = sender instanceof Player ? ((Player) sender).getLevel() : sender.getServer().getDefaultLevel();
+        }
+        return level;
+    }
+}
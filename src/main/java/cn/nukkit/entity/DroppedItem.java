@@ -6,6 +6,8 @@ import cn.nukkit.event.entity.ItemDespawnEvent;
 import cn.nukkit.event.entity.ItemSpawnEvent;
 import cn.nukkit.item.Item;
 import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.math.NukkitMath;
+import cn.nukkit.math.Vector3;
 import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.CompoundTag;
 import cn.nukkit.network.protocol.AddItemEntityPacket;
@@ -41,6 +43,9 @@ public class DroppedItem extends Entity {
 
     public boolean canCollide = false;
 
+    //Resting items lie still on the ground and skip their physics until something disturbs them
+    protected boolean resting = false;
+
     @Override
     protected void initEntity() {
         super.initEntity();
@@ -99,16 +104,22 @@ public class DroppedItem extends Entity {
 
         this.lastUpdate = currentTick;
 
+        if (this.resting) {
+            if (this.isAlive() && this.fireTicks <= 0 && this.effects.isEmpty()) {
+                this.age += tickDiff;
+                this.ticksLived += tickDiff;
+                this.tickPickupDelay(tickDiff);
+                this.checkDespawn();
+                return false;
+            }
+            this.resting = false;
+        }
+
         boolean hasUpdate = this.entityBaseTick(tickDiff);
 
         if (this.isAlive()) {
 
-            if (this.pickupDelay > 0 && this.pickupDelay < 32767) {
-                this.pickupDelay -= tickDiff;
-                if (this.pickupDelay < 0) {
-                    this.pickupDelay = 0;
-                }
-            }
+            this.tickPickupDelay(tickDiff);
 
             this.motionY -= this.gravity;
 
@@ -121,7 +132,7 @@ public class DroppedItem extends Entity {
             double friction = 1 - this.drag;
 
             if (this.onGround && (Math.abs(this.motionX) > 0.00001 || Math.abs(this.motionZ) > 0.00001)) {
-                friction *= this.getLevel().getBlock(this.temporalVector.setComponents((int) Math.floor(this.x), (int) Math.floor(this.y - 1), (int) Math.floor(this.z) - 1)).getFrictionFactor();
+                friction *= this.getLevel().getBlockState(NukkitMath.floorDouble(this.x), NukkitMath.floorDouble(this.y - 1), NukkitMath.floorDouble(this.z)).getFrictionFactor();
             }
 
             this.motionX *= friction;
@@ -134,19 +145,78 @@ public class DroppedItem extends Entity {
 
             this.updateMovement();
 
-            if (this.age > 6000) {
-                ItemDespawnEvent ev = new ItemDespawnEvent(this);
-                this.server.getPluginManager().callEvent(ev);
-                if (ev.isCancelled()) {
-                    this.age = 0;
-                } else {
-                    this.kill();
-                    hasUpdate = true;
-                }
+            if (this.checkDespawn()) {
+                hasUpdate = true;
+            }
+        }
+
+        if (hasUpdate || !this.onGround || Math.abs(this.motionX) > 0.00001 || Math.abs(this.motionY) > 0.00001 || Math.abs(this.motionZ) > 0.00001) {
+            return true;
+        }
+
+        this.resting = this.isAlive();
+        return false;
+    }
+
+    private void tickPickupDelay(int tickDiff) {
+        if (this.pickupDelay > 0 && this.pickupDelay < 32767) {
+            this.pickupDelay -= tickDiff;
+            if (this.pickupDelay < 0) {
+                this.pickupDelay = 0;
+            }
+        }
+    }
+
+    /**
+     * Kills the item once it is old enough, unless a plugin keeps it. Returns true if it was killed.
+     */
+    private boolean checkDespawn() {
+        if (this.age > 6000) {
+            ItemDespawnEvent ev = new ItemDespawnEvent(this);
+            this.server.getPluginManager().callEvent(ev);
+            if (ev.isCancelled()) {
+                this.age = 0;
+            } else {
+                this.resting = false;
+                this.kill();
+                return true;
             }
         }
+        return false;
+    }
+
+    public boolean isResting() {
+        return this.resting;
+    }
+
+    /**
+     * Makes a resting item run its physics again.
+     */
+    public void wakeUp() {
+        this.resting = false;
+        this.scheduleUpdate();
+    }
+
+    @Override
+    public void onNearbyBlockChange() {
+        this.wakeUp();
+    }
+
+    @Override
+    public boolean setMotion(Vector3 motion) {
+        if (super.setMotion(motion)) {
+            this.wakeUp();
+            return true;
+        }
+        return false;
+    }
+
+    public int getAge() {
+        return this.age;
+    }
 
-        return hasUpdate || !this.onGround || Math.abs(this.motionX) > 0.00001 || Math.abs(this.motionY) > 0.00001 || Math.abs(this.motionZ) > 0.00001;
+    public void setAge(int age) {
+        this.age = age;
     }
 
     @Override
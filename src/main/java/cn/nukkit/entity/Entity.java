@@ -6,6 +6,9 @@ import cn.nukkit.block.Block;
 import cn.nukkit.block.Water;
 import cn.nukkit.entity.data.*;
 import cn.nukkit.event.entity.*;
+import cn.nukkit.level.ActivationRange;
+import cn.nukkit.level.CollisionBuffer;
+import cn.nukkit.level.EntityPhysics;
 import cn.nukkit.level.Level;
 import cn.nukkit.level.Location;
 import cn.nukkit.level.Position;
@@ -145,6 +148,19 @@ public abstract class Entity extends Location implements Metadatable {
     public CompoundTag namedTag;
     public boolean canCollide = true;
 
+    /**
+     * Cell and slot of this entity in the spatial index of its level, maintained by the index.
+     */
+    public long spatialCell = Long.MIN_VALUE;
+    public int spatialSlot = -1;
+
+    //Activation state, see ActivationRange
+    public int activatedTick = -1;
+    public int activationType = -1;
+
+    //Block collisions collected ahead of the update, see EntityPhysics
+    public EntityPhysics.Snapshot physicsSnapshot = null;
+
     protected boolean isStatic = false;
 
     public boolean isCollided = false;
@@ -587,6 +603,7 @@ public abstract class Entity extends Location implements Metadatable {
             return;
         }
         this.setLastDamageCause(source);
+        ActivationRange.wakeUp(this, this.server.getTick());
 
         this.setHealth(this.getHealth() - source.getFinalDamage());
     }
@@ -641,6 +658,10 @@ public abstract class Entity extends Location implements Metadatable {
         this.maxHealth = maxHealth;
     }
 
+    public float getGravity() {
+        return this.gravity;
+    }
+
     public boolean canCollideWith(Entity entity) {
         return !this.justCreated && !this.equals(entity);
     }
@@ -1038,9 +1059,7 @@ public abstract class Entity extends Location implements Metadatable {
 
         AxisAlignedBB newBB = this.boundingBox.getOffsetBoundingBox(dx, dy, dz);
 
-        AxisAlignedBB[] list = this.level.getCollisionCubes(this, newBB, false);
-
-        if (list.length == 0) {
+        if (this.level.getCollisionCubes(this, newBB, false, CollisionBuffer.get()).isEmpty()) {
             this.boundingBox = newBB;
         }
 
@@ -1054,7 +1073,7 @@ public abstract class Entity extends Location implements Metadatable {
             AxisAlignedBB bb = this.boundingBox.clone();
             bb.minY -= 0.75;
 
-            this.onGround = this.level.getCollisionBlocks(bb).length > 0;
+            this.onGround = this.level.hasCollisionBlocks(bb);
         }
         this.isCollided = this.onGround;
         this.updateFallState((float) dy, this.onGround);
@@ -1083,24 +1102,28 @@ public abstract class Entity extends Location implements Metadatable {
 
             AxisAlignedBB axisalignedbb = this.boundingBox.clone();
 
-            AxisAlignedBB[] list = this.level.getCollisionCubes(this, this.level.getTickRate() > 1 ? this.boundingBox.getOffsetBoundingBox(dx, dy, dz) : this.boundingBox.addCoord(dx, dy, dz), false);
+            AxisAlignedBB moveBB = this.level.getTickRate() > 1 ? this.boundingBox.getOffsetBoundingBox(dx, dy, dz) : this.boundingBox.addCoord(dx, dy, dz);
+            CollisionBuffer list = CollisionBuffer.get();
+            if (this.physicsSnapshot == null || !this.physicsSnapshot.collect(this.level, moveBB, list)) {
+                this.level.getCollisionCubes(this, moveBB, false, list);
+            }
 
-            for (AxisAlignedBB bb : list) {
-                dy = bb.calculateYOffset(this.boundingBox, dy);
+            for (int i = 0; i < list.size(); ++i) {
+                dy = list.get(i).calculateYOffset(this.boundingBox, dy);
             }
 
             this.boundingBox.offset(0, dy, 0);
 
             boolean fallingFlag = (this.onGround || (dy != movY && movY < 0));
 
-            for (AxisAlignedBB bb : list) {
-                dx = bb.calculateXOffset(this.boundingBox, dx);
+            for (int i = 0; i < list.size(); ++i) {
+                dx = list.get(i).calculateXOffset(this.boundingBox, dx);
             }
 
             this.boundingBox.offset(dx, 0, 0);
 
-            for (AxisAlignedBB bb : list) {
-                dz = bb.calculateZOffset(this.boundingBox, dz);
+            for (int i = 0; i < list.size(); ++i) {
+                dz = list.get(i).calculateZOffset(this.boundingBox, dz);
             }
 
             this.boundingBox.offset(0, 0, dz);
@@ -1118,22 +1141,22 @@ public abstract class Entity extends Location implements Metadatable {
 
                 this.boundingBox.setBB(axisalignedbb);
 
-                list = this.level.getCollisionCubes(this, this.boundingBox.addCoord(dx, dy, dz), false);
+                list = this.level.getCollisionCubes(this, this.boundingBox.addCoord(dx, dy, dz), false, CollisionBuffer.get());
 
-                for (AxisAlignedBB bb : list) {
-                    dy = bb.calculateYOffset(this.boundingBox, dy);
+                for (int i = 0; i < list.size(); ++i) {
+                    dy = list.get(i).calculateYOffset(this.boundingBox, dy);
                 }
 
                 this.boundingBox.offset(0, dy, 0);
 
-                for (AxisAlignedBB bb : list) {
-                    dx = bb.calculateXOffset(this.boundingBox, dx);
+                for (int i = 0; i < list.size(); ++i) {
+                    dx = list.get(i).calculateXOffset(this.boundingBox, dx);
                 }
 
                 this.boundingBox.offset(dx, 0, 0);
 
-                for (AxisAlignedBB bb : list) {
-                    dz = bb.calculateZOffset(this.boundingBox, dz);
+                for (int i = 0; i < list.size(); ++i) {
+                    dz = list.get(i).calculateZOffset(this.boundingBox, dz);
                 }
 
                 this.boundingBox.offset(0, 0, dz);
@@ -1245,25 +1268,17 @@ public abstract class Entity extends Location implements Metadatable {
     }
 
     protected void checkChunks() {
+        this.level.updateEntityIndex(this);
+
         if (this.chunk == null || (this.chunk.getX() != ((int) this.x >> 4)) || this.chunk.getZ() != ((int) this.z >> 4)) {
-            if (this.chunk != null) {
-                this.chunk.removeEntity(this);
+            FullChunk oldChunk = this.chunk;
+            if (oldChunk != null) {
+                oldChunk.removeEntity(this);
             }
             this.chunk = this.level.getChunk((int) this.x >> 4, (int) this.z >> 4, true);
 
             if (!this.justCreated) {
-                Map<Integer, Player> newChunk = this.level.getChunkPlayers((int) this.x >> 4, (int) this.z >> 4);
-                for (Player player : this.hasSpawned.values()) {
-                    if (!newChunk.containsKey(player.getLoaderId())) {
-                        this.despawnFrom(player);
-                    } else {
-                        newChunk.remove(player.getLoaderId());
-                    }
-                }
-
-                for (Player player : newChunk.values()) {
-                    this.spawnTo(player);
-                }
+                this.level.getPlayerVisibility().onChunkChange(this, oldChunk != null, oldChunk != null ? oldChunk.getX() : 0, oldChunk != null ? oldChunk.getZ() : 0, (int) this.x >> 4, (int) this.z >> 4);
             }
 
             if (this.chunk == null) {
@@ -1384,6 +1399,14 @@ public abstract class Entity extends Location implements Metadatable {
         return this.id;
     }
 
+    /**
+     * Called when a block next to this entity changed.
+     */
+    public void onNearbyBlockChange() {
+        ActivationRange.wakeUp(this, this.server.getTick());
+        this.scheduleUpdate();
+    }
+
     public void respawnToAll() {
         for (Player player : this.hasSpawned.values()) {
             this.spawnTo(player);
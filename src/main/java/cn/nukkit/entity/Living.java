@@ -5,6 +5,7 @@ import cn.nukkit.block.Block;
 import cn.nukkit.entity.data.ShortEntityData;
 import cn.nukkit.event.entity.*;
 import cn.nukkit.item.Item;
+import cn.nukkit.level.RayTrace;
 import cn.nukkit.level.format.FullChunk;
 import cn.nukkit.math.Vector3;
 import cn.nukkit.nbt.tag.CompoundTag;
@@ -69,9 +70,14 @@ public abstract class Living extends Entity implements Damageable {
 
     public abstract String getName();
 
+    /**
+     * Whether no block with a collision box is between the eyes of this entity and the middle of the given one.
+     */
     public boolean hasLineOfSight(Entity entity) {
-        //todo
-        return true;
+        if (entity.level != this.level) {
+            return false;
+        }
+        return RayTrace.get().hasLineOfSight(this.level, this.x, this.y + this.getEyeHeight(), this.z, entity.x, entity.y + entity.height / 2, entity.z);
     }
 
     @Override
@@ -2,8 +2,9 @@ package cn.nukkit.entity;
 
 import cn.nukkit.Player;
 import cn.nukkit.event.entity.EntityDamageEvent;
-import cn.nukkit.event.entity.EntityExplosionPrimeEvent;
+import cn.nukkit.event.entity.ExplosionPrimeEvent;
 import cn.nukkit.level.Explosion;
+import cn.nukkit.level.Position;
 import cn.nukkit.level.format.FullChunk;
 import cn.nukkit.nbt.tag.CompoundTag;
 import cn.nukkit.network.protocol.AddEntityPacket;
@@ -110,14 +111,13 @@ public class PrimedTNT extends Entity implements Explosive {
     }
 
     public void explode() {
-        EntityExplosionPrimeEvent event = new EntityExplosionPrimeEvent(this, 4);
+        ExplosionPrimeEvent event = new ExplosionPrimeEvent(this, 4);
         server.getPluginManager().callEvent(event);
         if (!event.isCancelled()) {
-            Explosion explosion = new Explosion(this, event.getForce(), this);
-            if (event.isBlockBreaking()) {
-                explosion.explodeA();
-            }
-            explosion.explodeB();
+            //The explosion can go off in a later tick, after this entity is gone
+            Explosion explosion = new Explosion(new Position(x, y, z, level), (float) event.getForce(), this);
+            explosion.setBlockBreaking(event.isBlockBreaking());
+            level.addExplosion(explosion);
         }
     }
 
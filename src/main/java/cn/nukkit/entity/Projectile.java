@@ -3,9 +3,8 @@ package cn.nukkit.entity;
 import cn.nukkit.entity.data.LongEntityData;
 import cn.nukkit.event.entity.*;
 import cn.nukkit.level.MovingObjectPosition;
+import cn.nukkit.level.RayTrace;
 import cn.nukkit.level.format.FullChunk;
-import cn.nukkit.math.AxisAlignedBB;
-import cn.nukkit.math.Vector3;
 import cn.nukkit.nbt.tag.CompoundTag;
 
 import java.util.Random;
@@ -88,37 +87,16 @@ public abstract class Projectile extends Entity {
                 this.motionY -= this.gravity;
             }
 
-            Vector3 moveVector = new Vector3(this.x + this.motionX, this.y + this.motionY, this.z + this.motionZ);
+            double toX = this.x + this.motionX;
+            double toY = this.y + this.motionY;
+            double toZ = this.z + this.motionZ;
 
-            Entity[] list = this.getLevel().getCollidingEntities(this.boundingBox.addCoord(this.motionX, this.motionY, this.motionZ).expand(1, 1, 1), this);
-
-            double nearDistance = Integer.MAX_VALUE;
-            Entity nearEntity = null;
-
-            for (Entity entity : list) {
-                if (/*!entity.canCollideWith(this) or */
-                        (entity.equals(this.shootingEntity) && this.ticksLived < 5)
-                        ) {
-                    continue;
-                }
-
-                AxisAlignedBB axisalignedbb = entity.boundingBox.grow(0.3, 0.3, 0.3);
-                MovingObjectPosition ob = axisalignedbb.calculateIntercept(this, moveVector);
-
-                if (ob == null) {
-                    continue;
-                }
-
-                double distance = this.distanceSquared(ob.hitVector);
-
-                if (distance < nearDistance) {
-                    nearDistance = distance;
-                    nearEntity = entity;
-                }
-            }
-
-            if (nearEntity != null) {
-                movingObjectPosition = MovingObjectPosition.fromEntity(nearEntity);
+            //Entities behind the first block on the way can not be hit
+            RayTrace trace = RayTrace.get();
+            double fraction = trace.traceBlocks(this.level, this.x, this.y, this.z, toX, toY, toZ) ? trace.getFraction() : 1;
+            Entity ignore = this.ticksLived < 5 ? this.shootingEntity : null;
+            if (trace.traceEntities(this.level, this.x, this.y, this.z, toX, toY, toZ, this, ignore, 0.3, fraction)) {
+                movingObjectPosition = MovingObjectPosition.fromEntity(trace.getEntityHit());
             }
 
             if (movingObjectPosition != null) {
@@ -0,0 +1,48 @@
+package cn.nukkit.event.entity;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.event.Cancellable;
+import cn.nukkit.event.HandlerList;
+import cn.nukkit.level.Position;
+
+import java.util.List;
+
+public class EntityExplodeEvent extends EntityEvent implements Cancellable {
+    private static final HandlerList handlers = new HandlerList();
+
+    public static HandlerList getHandlers() {
+        return handlers;
+    }
+
+    protected Position position;
+    protected List<Block> blocks;
+    protected double yield;
+
+    public EntityExplodeEvent(Entity entity, Position position, List<Block> blocks, double yield) {
+        this.entity = entity;
+        this.position = position;
+        this.blocks = blocks;
+        this.yield = yield;
+    }
+
+    public Position getPosition() {
+        return this.position;
+    }
+
+    public List<Block> getBlockList() {
+        return this.blocks;
+    }
+
+    public void setBlockList(List<Block> blocks) {
+        this.blocks = blocks;
+    }
+
+    public double getYield() {
+        return this.yield;
+    }
+
+    public void setYield(double yield) {
+        this.yield = yield;
+    }
+}
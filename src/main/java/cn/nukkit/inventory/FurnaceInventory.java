@@ -1,5 +1,6 @@
 package cn.nukkit.inventory;
 
+import cn.nukkit.Player;
 import cn.nukkit.item.Item;
 import cn.nukkit.tile.Furnace;
 
@@ -42,6 +43,14 @@ public class FurnaceInventory extends ContainerInventory {
         return this.setItem(0, item);
     }
 
+    @Override
+    public void onOpen(Player who) {
+        super.onOpen(who);
+
+        //Viewers see the progress bars move, so a sleeping furnace has to tick again
+        this.getHolder().scheduleUpdate();
+    }
+
     @Override
     public void onSlotChange(int index, Item before) {
         super.onSlotChange(index, before);
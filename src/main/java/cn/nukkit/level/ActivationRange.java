@@ -0,0 +1,171 @@
+package cn.nukkit.level;
+
+import cn.nukkit.Player;
+import cn.nukkit.entity.Animal;
+import cn.nukkit.entity.Creature;
+import cn.nukkit.entity.DroppedItem;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.entity.FallingSand;
+import cn.nukkit.entity.Human;
+import cn.nukkit.entity.PrimedTNT;
+import cn.nukkit.entity.Projectile;
+import cn.nukkit.entity.WaterAnimal;
+import cn.nukkit.math.AxisAlignedBB;
+
+import java.util.Collection;
+
+/**
+ * Decides which entities of a level get a full update every tick, by their distance to the chunk loaders.
+ */
+public class ActivationRange implements EntityVisitor {
+
+    public static final int TYPE_MONSTER = 0;
+    public static final int TYPE_ANIMAL = 1;
+    public static final int TYPE_ITEM = 2;
+    public static final int TYPE_PROJECTILE = 3;
+    public static final int TYPE_MISC = 4;
+
+    public static final int TYPE_COUNT = 5;
+
+    /**
+     * Ticks an entity stays active after it is woken up.
+     */
+    public static final int WAKE_TICKS = 20;
+
+    private final Level level;
+
+    //Range in blocks per type, 0 if the type is always active
+    private final int[] ranges = new int[TYPE_COUNT];
+    private final int maxRange;
+    private final int inactiveInterval;
+
+    private final int[] activeCounts = new int[TYPE_COUNT];
+    private final int[] inactiveCounts = new int[TYPE_COUNT];
+    private final int[] lastActiveCounts = new int[TYPE_COUNT];
+    private final int[] lastInactiveCounts = new int[TYPE_COUNT];
+
+    private final AxisAlignedBB searchBox = new AxisAlignedBB(0, 0, 0, 0, 0, 0);
+
+    //Loader and tick of the current activation pass
+    private double loaderX;
+    private double loaderZ;
+    private int currentTick;
+
+    public ActivationRange(Level level, int monsterRange, int animalRange, int itemRange, int miscRange, int inactiveInterval) {
+        this.level = level;
+        this.ranges[TYPE_MONSTER] = monsterRange;
+        this.ranges[TYPE_ANIMAL] = animalRange;
+        this.ranges[TYPE_ITEM] = itemRange;
+        this.ranges[TYPE_PROJECTILE] = 0;
+        this.ranges[TYPE_MISC] = miscRange;
+        this.maxRange = Math.max(Math.max(monsterRange, animalRange), Math.max(itemRange, miscRange));
+        this.inactiveInterval = inactiveInterval;
+    }
+
+    public static int getType(Entity entity) {
+        if (entity instanceof Animal || entity instanceof WaterAnimal) {
+            return TYPE_ANIMAL;
+        } else if (entity instanceof Creature && !(entity instanceof Human)) {
+            return TYPE_MONSTER;
+        } else if (entity instanceof DroppedItem) {
+            return TYPE_ITEM;
+        } else if (entity instanceof Projectile) {
+            return TYPE_PROJECTILE;
+        }
+        return TYPE_MISC;
+    }
+
+    private static boolean isAlwaysActive(Entity entity) {
+        return entity instanceof Player || entity instanceof Projectile || entity instanceof PrimedTNT || entity instanceof FallingSand;
+    }
+
+    /**
+     * Marks the entities around the given loaders active for this tick, and starts counting the tick.
+     */
+    public void activateEntities(Collection<ChunkLoader> loaders, int currentTick) {
+        System.arraycopy(this.activeCounts, 0, this.lastActiveCounts, 0, TYPE_COUNT);
+        System.arraycopy(this.inactiveCounts, 0, this.lastInactiveCounts, 0, TYPE_COUNT);
+        for (int i = 0; i < TYPE_COUNT; ++i) {
+            this.activeCounts[i] = 0;
+            this.inactiveCounts[i] = 0;
+        }
+
+        if (this.maxRange <= 0) {
+            return;
+        }
+
+        this.currentTick = currentTick;
+        for (ChunkLoader loader : loaders) {
+            if (!loader.isLoaderActive()) {
+                continue;
+            }
+
+            double x = this.loaderX = loader.getX();
+            double z = this.loaderZ = loader.getZ();
+            this.searchBox.setBounds(x - this.maxRange, 0, z - this.maxRange, x + this.maxRange, 256, z + this.maxRange);
+            this.level.forEachNearbyEntity(this.searchBox, null, this);
+        }
+    }
+
+    @Override
+    public boolean visit(Entity entity) {
+        int range = this.ranges[this.getCachedType(entity)];
+        if (Math.abs(entity.x - this.loaderX) <= range && Math.abs(entity.z - this.loaderZ) <= range && entity.activatedTick < this.currentTick) {
+            entity.activatedTick = this.currentTick;
+        }
+        return true;
+    }
+
+    public boolean isActive(Entity entity, int currentTick) {
+        return this.ranges[this.getCachedType(entity)] <= 0 || entity.activatedTick >= currentTick || entity.justCreated || isAlwaysActive(entity);
+    }
+
+    /**
+     * Whether an entity is updated in this tick. Counts the entity as active or inactive.
+     */
+    public boolean shouldUpdate(Entity entity, int currentTick) {
+        int type = this.getCachedType(entity);
+        if (this.isActive(entity, currentTick)) {
+            ++this.activeCounts[type];
+            return true;
+        }
+
+        ++this.inactiveCounts[type];
+        return this.inactiveInterval > 0 && currentTick - entity.lastUpdate >= this.inactiveInterval;
+    }
+
+    /**
+     * Whether an entity is updated in this tick, without counting it.
+     */
+    public boolean willUpdate(Entity entity, int currentTick) {
+        return this.isActive(entity, currentTick) || (this.inactiveInterval > 0 && currentTick - entity.lastUpdate >= this.inactiveInterval);
+    }
+
+    /**
+     * Keeps an entity active for the next {@link #WAKE_TICKS} ticks.
+     */
+    public static void wakeUp(Entity entity, int currentTick) {
+        entity.activatedTick = Math.max(entity.activatedTick, currentTick + WAKE_TICKS);
+    }
+
+    /**
+     * Number of entities of a type that were updated in the last tick.
+     */
+    public int getActiveCount(int type) {
+        return this.lastActiveCounts[type];
+    }
+
+    /**
+     * Number of entities of a type that were inactive in the last tick.
+     */
+    public int getInactiveCount(int type) {
+        return this.lastInactiveCounts[type];
+    }
+
+    private int getCachedType(Entity entity) {
+        if (entity.activationType < 0) {
+            entity.activationType = getType(entity);
+        }
+        return entity.activationType;
+    }
+}
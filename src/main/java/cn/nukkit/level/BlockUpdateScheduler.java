@@ -0,0 +1,203 @@
+package cn.nukkit.level;
+
+import cn.nukkit.utils.LongIntMap;
+
+/**
+ * Scheduled block updates of a level, kept in a timing wheel bucketed by the tick they are due.
+ */
+public class BlockUpdateScheduler {
+
+    public static final int WHEEL_SIZE = 256;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    public static final long NONE = Long.MIN_VALUE;
+
+    private final LongList[] wheel = new LongList[WHEEL_SIZE];
+    private final LongList farKeys = new LongList();
+    private final LongList farTicks = new LongList();
+
+    private final LongIntMap pending = new LongIntMap();
+    private final LongIntMap chunkCounts = new LongIntMap();
+
+    private int tick;
+    private int readIndex = 0;
+
+    public BlockUpdateScheduler(int currentTick) {
+        this.tick = currentTick;
+        for (int i = 0; i < WHEEL_SIZE; ++i) {
+            this.wheel[i] = new LongList();
+        }
+    }
+
+    public static long hash(int x, int y, int z) {
+        return (((long) x & 0xfffffff) << 36) | (((long) z & 0xfffffff) << 8) | ((long) y & 0xff);
+    }
+
+    public static int getHashX(long hash) {
+        return (int) (hash >> 36);
+    }
+
+    public static int getHashY(long hash) {
+        return (int) (hash & 0xff);
+    }
+
+    public static int getHashZ(long hash) {
+        return (int) ((hash << 28) >> 36);
+    }
+
+    private static long chunkKey(long hash) {
+        return ((hash >> 40) << 32) | ((hash >>> 12) & 0xffffffL);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | ((long) chunkZ & 0xffffffL);
+    }
+
+    /**
+     * Number of pending updates.
+     */
+    public int size() {
+        return this.pending.size();
+    }
+
+    public boolean isScheduled(int x, int y, int z) {
+        return this.pending.get(hash(x, y, z), -1) != -1;
+    }
+
+    /**
+     * Schedules an update of a position for the given tick. Returns false if the position already has an update
+     * that is due no later.
+     */
+    public boolean schedule(int x, int y, int z, int dueTick) {
+        long key = hash(x, y, z);
+        if (dueTick < this.tick) {
+            dueTick = this.tick;
+        }
+
+        int current = this.pending.get(key, -1);
+        if (current != -1) {
+            if (current <= dueTick) {
+                return false;
+            }
+            //The entry in the old bucket stays behind and is skipped when drained
+        } else {
+            long chunk = chunkKey(key);
+            this.chunkCounts.put(chunk, this.chunkCounts.get(chunk, 0) + 1);
+        }
+        this.pending.put(key, dueTick);
+
+        if (dueTick - this.tick < WHEEL_SIZE) {
+            this.wheel[dueTick & WHEEL_MASK].add(key);
+        } else {
+            this.farKeys.add(key);
+            this.farTicks.add(dueTick);
+        }
+        return true;
+    }
+
+    /**
+     * Takes the next update due at or before the given tick, or returns {@link #NONE} if there is none.
+     */
+    public long poll(int currentTick) {
+        while (this.tick <= currentTick) {
+            LongList bucket = this.wheel[this.tick & WHEEL_MASK];
+            while (this.readIndex < bucket.size) {
+                long key = bucket.values[this.readIndex++];
+                if (this.pending.get(key, -1) == this.tick) {
+                    this.pending.remove(key, -1);
+                    this.decrementChunk(chunkKey(key));
+                    return key;
+                }
+            }
+
+            bucket.clear();
+            this.readIndex = 0;
+            if ((++this.tick & WHEEL_MASK) == 0) {
+                this.promoteFar();
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Drops the pending updates of a chunk.
+     */
+    public void removeChunk(int chunkX, int chunkZ) {
+        long chunk = chunkKey(chunkX, chunkZ);
+        if (this.chunkCounts.get(chunk, 0) == 0) {
+            return;
+        }
+
+        //Bucket entries of the removed positions are skipped when drained
+        for (long key : this.pending.keys()) {
+            if (chunkKey(key) == chunk) {
+                this.pending.remove(key, -1);
+            }
+        }
+        this.chunkCounts.remove(chunk, 0);
+    }
+
+    public void clear() {
+        for (LongList bucket : this.wheel) {
+            bucket.clear();
+        }
+        this.farKeys.clear();
+        this.farTicks.clear();
+        this.pending.clear();
+        this.chunkCounts.clear();
+        this.readIndex = 0;
+    }
+
+    private void decrementChunk(long chunk) {
+        int count = this.chunkCounts.get(chunk, 0) - 1;
+        if (count <= 0) {
+            this.chunkCounts.remove(chunk, 0);
+        } else {
+            this.chunkCounts.put(chunk, count);
+        }
+    }
+
+    private void promoteFar() {
+        int kept = 0;
+        for (int i = 0; i < this.farKeys.size; ++i) {
+            long key = this.farKeys.values[i];
+            int dueTick = (int) this.farTicks.values[i];
+            if (this.pending.get(key, -1) != dueTick) {
+                continue;
+            }
+
+            if (dueTick - this.tick < WHEEL_SIZE) {
+                this.wheel[dueTick & WHEEL_MASK].add(key);
+            } else {
+                this.farKeys.values[kept] = key;
+                this.farTicks.values[kept] = dueTick;
+                ++kept;
+            }
+        }
+        this.farKeys.size = kept;
+        this.farTicks.size = kept;
+    }
+
+    private static class LongList {
+
+        private long[] values = new long[16];
+        private int size = 0;
+
+        private void add(long value) {
+            if (this.size == this.values.length) {
+                long[] values = new long[this.size << 1];
+                System.arraycopy(this.values, 0, values, 0, this.size);
+                this.values = values;
+            }
+            this.values[this.size++] = value;
+        }
+
+        private void clear() {
+            //Keep the array of busy buckets, but do not hold on to the memory of a burst
+            if (this.values.length > 1024) {
+                this.values = new long[16];
+            }
+            this.size = 0;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package cn.nukkit.level;
+
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.network.protocol.UpdateBlockPacket;
+
+/**
+ * Set of block positions changed in one chunk during a tick, stored as a bit map per chunk section.
+ */
+public class ChunkBlockDelta {
+
+    /**
+     * Compressed size of one record in a batch, measured on scattered changes at the default compression level.
+     */
+    public static final float RECORD_SIZE = 3.5f;
+
+    /**
+     * Compressed size of a generated terrain chunk, used for chunks that were not sent yet.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 3584;
+
+    private static final int SECTION_COUNT = 8;
+
+    private final int chunkX;
+    private final int chunkZ;
+
+    private final long[][] sections = new long[SECTION_COUNT][];
+    private int count = 0;
+
+    public ChunkBlockDelta(int chunkX, int chunkZ) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    public int getChunkX() {
+        return this.chunkX;
+    }
+
+    public int getChunkZ() {
+        return this.chunkZ;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    /**
+     * Records a change at chunk-relative coordinates. Returns false if the position was already recorded.
+     */
+    public boolean add(int x, int y, int z) {
+        int section = (y >> 4) & 0x07;
+        long[] bits = this.sections[section];
+        if (bits == null) {
+            bits = this.sections[section] = new long[64];
+        }
+        int index = ((y & 0x0f) << 8) | ((z & 0x0f) << 4) | (x & 0x0f);
+        long mask = 1L << index;
+        if ((bits[index >>> 6] & mask) != 0) {
+            return false;
+        }
+        bits[index >>> 6] |= mask;
+        ++this.count;
+        return true;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        long[] bits = this.sections[(y >> 4) & 0x07];
+        int index = ((y & 0x0f) << 8) | ((z & 0x0f) << 4) | (x & 0x0f);
+        return bits != null && (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Records every position of another delta of the same chunk.
+     */
+    public void addAll(ChunkBlockDelta delta) {
+        for (int section = 0; section < SECTION_COUNT; ++section) {
+            long[] other = delta.sections[section];
+            if (other == null) {
+                continue;
+            }
+            long[] bits = this.sections[section];
+            if (bits == null) {
+                bits = this.sections[section] = new long[64];
+            }
+            for (int word = 0; word < 64; ++word) {
+                long added = other[word] & ~bits[word];
+                bits[word] |= added;
+                this.count += Long.bitCount(added);
+            }
+        }
+    }
+
+    /**
+     * Recorded positions as chunk-relative indices (y << 8 | z << 4 | x), ordered section by section.
+     */
+    public int[] getIndices() {
+        int[] indices = new int[this.count];
+        int n = 0;
+        for (int section = 0; section < SECTION_COUNT; ++section) {
+            long[] bits = this.sections[section];
+            if (bits == null) {
+                continue;
+            }
+            for (int word = 0; word < 64; ++word) {
+                long value = bits[word];
+                while (value != 0) {
+                    indices[n++] = (section << 12) | (word << 6) | Long.numberOfTrailingZeros(value);
+                    value &= value - 1;
+                }
+            }
+        }
+        return indices;
+    }
+
+    public void clear() {
+        for (int i = 0; i < SECTION_COUNT; ++i) {
+            this.sections[i] = null;
+        }
+        this.count = 0;
+    }
+
+    /**
+     * Whether resending the chunk costs fewer bytes than the records of this delta.
+     *
+     * @param chunkSize compressed size of the chunk payload, or -1 if it is not known
+     */
+    public boolean shouldResendChunk(int chunkSize) {
+        return this.count * RECORD_SIZE > (chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Builds one packet with the current state of every recorded position.
+     */
+    public UpdateBlockPacket encode(FullChunk chunk, int flags) {
+        UpdateBlockPacket pk = new UpdateBlockPacket();
+        UpdateBlockPacket.Entry[] records = new UpdateBlockPacket.Entry[this.count];
+        int baseX = this.chunkX << 4;
+        int baseZ = this.chunkZ << 4;
+        int n = 0;
+        for (int section = 0; section < SECTION_COUNT; ++section) {
+            long[] bits = this.sections[section];
+            if (bits == null) {
+                continue;
+            }
+            for (int word = 0; word < 64; ++word) {
+                long value = bits[word];
+                while (value != 0) {
+                    int index = (word << 6) | Long.numberOfTrailingZeros(value);
+                    value &= value - 1;
+                    int x = index & 0x0f;
+                    int z = (index >> 4) & 0x0f;
+                    int y = (section << 4) | (index >> 8);
+                    int fullBlock = chunk.getFullBlock(x, y, z);
+                    records[n++] = new UpdateBlockPacket.Entry(baseX | x, baseZ | z, y, fullBlock >> 4, fullBlock & 0x0f, flags);
+                }
+            }
+        }
+        pk.records = records;
+        return pk;
+    }
+}
@@ -4,26 +4,31 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Chunk managers used by the generation workers, keyed by level.
+ * <p>
+ * Every worker thread registers its own manager, so a manager is only ever touched by the thread that owns it and
+ * needs no locking.
+ *
  * author: MagicDroidX
  * Nukkit Project
  */
 public class ChunkManagerPool {
 
-    private static Map<Integer, ChunkManager> managers = new HashMap<>();
+    private static final ThreadLocal<Map<Integer, ChunkManager>> managers = ThreadLocal.withInitial(HashMap::new);
 
     public static void put(int levelId, ChunkManager manager) {
-        managers.put(levelId, manager);
+        managers.get().put(levelId, manager);
     }
 
     public static void remove(int levelId) {
-        managers.remove(levelId);
+        managers.get().remove(levelId);
     }
 
     public static boolean exists(int levelId) {
-        return managers.containsKey(levelId);
+        return managers.get().containsKey(levelId);
     }
 
     public static ChunkManager get(int levelId) {
-        return managers.getOrDefault(levelId, null);
+        return managers.get().getOrDefault(levelId, null);
     }
 }
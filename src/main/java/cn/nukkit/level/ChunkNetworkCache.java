@@ -0,0 +1,148 @@
+package cn.nukkit.level;
+
+import cn.nukkit.network.protocol.BatchPacket;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compressed FullChunkDataPacket batches of a level, validated against the chunk revision and evicted LRU.
+ */
+public class ChunkNetworkCache {
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final Map<String, Integer> revisions = new HashMap<>();
+
+    //Size of the last batch of each chunk, kept when the batch is invalidated or evicted
+    private final Map<String, Integer> sizes = new HashMap<>();
+
+    private long maxMemory;
+    private long memory = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long stores = 0;
+
+    public ChunkNetworkCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    public int getRevision(String index) {
+        Integer revision = this.revisions.get(index);
+        return revision == null ? 0 : revision;
+    }
+
+    public BatchPacket get(String index) {
+        Entry entry = this.entries.get(index);
+        if (entry != null && entry.revision == this.getRevision(index)) {
+            ++this.hits;
+            return entry.packet;
+        }
+        ++this.misses;
+        return null;
+    }
+
+    /**
+     * Size of the last batch stored for a chunk, or -1 if none was stored since it was loaded.
+     */
+    public int getLastSize(String index) {
+        Integer size = this.sizes.get(index);
+        return size == null ? -1 : size;
+    }
+
+    public boolean contains(String index) {
+        Entry entry = this.entries.get(index);
+        return entry != null && entry.revision == this.getRevision(index);
+    }
+
+    public boolean put(String index, int revision, BatchPacket packet) {
+        if (revision != this.getRevision(index)) {
+            return false;
+        }
+
+        int size = packet.getBuffer().length;
+        if (size > this.maxMemory) {
+            return false;
+        }
+
+        this.remove(index);
+        this.entries.put(index, new Entry(revision, packet, size));
+        this.sizes.put(index, size);
+        this.memory += size;
+        ++this.stores;
+
+        Iterator<Entry> iterator = this.entries.values().iterator();
+        while (this.memory > this.maxMemory && iterator.hasNext()) {
+            this.memory -= iterator.next().size;
+            iterator.remove();
+        }
+
+        return true;
+    }
+
+    public void invalidate(String index) {
+        this.revisions.put(index, this.getRevision(index) + 1);
+        this.remove(index);
+    }
+
+    public void forget(String index) {
+        this.revisions.remove(index);
+        this.sizes.remove(index);
+        this.remove(index);
+    }
+
+    private void remove(String index) {
+        Entry entry = this.entries.remove(index);
+        if (entry != null) {
+            this.memory -= entry.size;
+        }
+    }
+
+    public void clear() {
+        this.entries.clear();
+        this.memory = 0;
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public long getMemory() {
+        return this.memory;
+    }
+
+    public long getMaxMemory() {
+        return this.maxMemory;
+    }
+
+    public void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getStores() {
+        return this.stores;
+    }
+
+    private static class Entry {
+        final int revision;
+        final BatchPacket packet;
+        final int size;
+
+        Entry(int revision, BatchPacket packet, int size) {
+            this.revision = revision;
+            this.packet = packet;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package cn.nukkit.level;
+
+import cn.nukkit.Server;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.level.generator.LightPopulationTask;
+import cn.nukkit.math.Vector3;
+import cn.nukkit.utils.Config;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Generates, populates, lights and saves a fixed set of chunks of a level in the background.
+ */
+public class ChunkPregenerator implements ChunkLoader {
+
+    public static final String PROGRESS_FILE = "pregen.yml";
+
+    public static final int MODE_RADIUS = 0;
+    public static final int MODE_REGIONS = 1;
+
+    private static final int REGION_CHUNKS = 32 * 32;
+
+    private final Level level;
+    private final Integer loaderId;
+
+    private final int mode;
+    private final int centerX;
+    private final int centerZ;
+    private final int radius;
+    private final int[] regions;
+    private final long total;
+
+    private long next;
+    private long completed;
+
+    private final TreeMap<Long, String> pending = new TreeMap<>();
+    private final Set<String> lighting = new HashSet<>();
+
+    private int chunksPerTick;
+    private int maxPending;
+    private double minTps;
+
+    private boolean running = false;
+    private boolean throttled = false;
+
+    private long startTime;
+    private long startCompleted;
+    private int saveTicker = 0;
+
+    /**
+     * Pregenerates every chunk within a square of the given radius around a center chunk.
+     */
+    public ChunkPregenerator(Level level, int centerX, int centerZ, int radius) {
+        this(level, MODE_RADIUS, centerX, centerZ, Math.max(0, radius), new int[0]);
+    }
+
+    /**
+     * Pregenerates whole regions, given as pairs of region coordinates.
+     */
+    public ChunkPregenerator(Level level, int[] regions) {
+        this(level, MODE_REGIONS, 0, 0, 0, regions);
+    }
+
+    private ChunkPregenerator(Level level, int mode, int centerX, int centerZ, int radius, int[] regions) {
+        if ((regions.length & 1) != 0) {
+            throw new IllegalArgumentException("Region coordinates must be given in pairs");
+        }
+
+        this.level = level;
+        this.loaderId = Level.generateChunkLoaderId(this);
+        this.mode = mode;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.regions = regions;
+
+        if (mode == MODE_RADIUS) {
+            long side = 2L * radius + 1;
+            this.total = side * side;
+        } else {
+            this.total = (long) (regions.length >> 1) * REGION_CHUNKS;
+        }
+
+        Server server = level.getServer();
+        this.chunksPerTick = Math.max(1, (int) server.getConfig("chunk-generation.pregen.chunks-per-tick", 2));
+        this.maxPending = Math.max(1, (int) server.getConfig("chunk-generation.pregen.max-pending", 16));
+        this.minTps = ((Number) server.getConfig("chunk-generation.pregen.min-tps", 18)).doubleValue();
+    }
+
+    /**
+     * Restores the pregeneration stored in the level folder, or returns null if there is none.
+     */
+    public static ChunkPregenerator load(Level level) {
+        File file = new File(level.getProvider().getPath() + PROGRESS_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+
+        Config config = new Config(file, Config.YAML);
+        ChunkPregenerator pregenerator;
+        if (config.get("mode", MODE_RADIUS) == MODE_REGIONS) {
+            List<String> list = config.get("regions", new ArrayList<>());
+            int[] regions = new int[list.size() << 1];
+            for (int i = 0; i < list.size(); ++i) {
+                String[] region = list.get(i).split(":");
+                regions[i << 1] = Integer.valueOf(region[0]);
+                regions[(i << 1) | 1] = Integer.valueOf(region[1]);
+            }
+            pregenerator = new ChunkPregenerator(level, regions);
+        } else {
+            pregenerator = new ChunkPregenerator(level, config.get("centerX", 0), config.get("centerZ", 0), config.get("radius", 0));
+        }
+
+        long position = ((Number) config.get("position", 0)).longValue();
+        pregenerator.next = pregenerator.completed = Math.max(0, Math.min(position, pregenerator.total));
+
+        return pregenerator;
+    }
+
+    public void start() {
+        if (this.running) {
+            return;
+        }
+
+        this.running = true;
+        this.startTime = System.currentTimeMillis();
+        this.startCompleted = this.completed;
+        this.save();
+    }
+
+    /**
+     * Stops and keeps the stored progress, so the pregeneration is resumed the next time the level is loaded.
+     */
+    public void pause() {
+        if (!this.running) {
+            return;
+        }
+
+        this.save();
+        this.running = false;
+        this.releaseAll();
+    }
+
+    /**
+     * Stops and forgets the stored progress.
+     */
+    public void cancel() {
+        this.running = false;
+        this.releaseAll();
+        this.deleteProgress();
+    }
+
+    public void tick() {
+        if (!this.running) {
+            return;
+        }
+
+        Iterator<Map.Entry<Long, String>> iterator = this.pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, String> entry = iterator.next();
+            int[] chunk = this.getChunkAt(entry.getKey());
+            if (this.process(entry.getValue(), chunk[0], chunk[1])) {
+                iterator.remove();
+                ++this.completed;
+            }
+        }
+
+        this.throttled = this.level.getServer().getTicksPerSecondAverage() < this.minTps;
+        if (!this.throttled) {
+            for (int i = 0; i < this.chunksPerTick && this.pending.size() < this.maxPending && this.next < this.total; ++i) {
+                long position = this.next++;
+                int[] chunk = this.getChunkAt(position);
+                this.pending.put(position, Level.chunkHash(chunk[0], chunk[1]));
+                this.level.registerChunkLoader(this, chunk[0], chunk[1], true);
+            }
+        }
+
+        if (this.completed >= this.total) {
+            this.running = false;
+            this.deleteProgress();
+            this.level.getServer().getLogger().info("Pregeneration of level \"" + this.level.getFolderName() + "\" finished: " + this.completed + " chunks");
+        } else if (++this.saveTicker >= 600) {
+            this.saveTicker = 0;
+            this.save();
+        }
+    }
+
+    /**
+     * Moves a chunk one step towards being generated, populated and lit. Returns true once it is finished and saved.
+     */
+    private boolean process(String index, int x, int z) {
+        BaseFullChunk chunk = this.level.getChunk(x, z, false);
+        if (chunk == null) {
+            this.level.loadChunk(x, z);
+            return false;
+        }
+
+        if (!chunk.isPopulated()) {
+            this.level.populateChunk(x, z, true);
+            return false;
+        }
+
+        if (!chunk.isLightPopulated()) {
+            if (this.lighting.add(index)) {
+                this.level.getServer().getScheduler().scheduleAsyncTask(new LightPopulationTask(this.level, chunk));
+            }
+            return false;
+        }
+
+        this.lighting.remove(index);
+
+        if (chunk.hasChanged() && chunk.getProvider() != null) {
+            this.level.getProvider().saveChunk(x, z);
+            chunk.setChanged(false);
+        }
+
+        this.level.unregisterChunkLoader(this, x, z);
+        return true;
+    }
+
+    private void releaseAll() {
+        long resume = this.getResumePosition();
+        for (long position : this.pending.keySet()) {
+            int[] chunk = this.getChunkAt(position);
+            this.level.unregisterChunkLoader(this, chunk[0], chunk[1]);
+        }
+        this.pending.clear();
+        this.lighting.clear();
+        this.next = this.completed = resume;
+    }
+
+    /**
+     * First position that is not finished yet. Chunks finish out of order, so everything behind it is done.
+     */
+    private long getResumePosition() {
+        return this.pending.isEmpty() ? this.next : this.pending.firstKey();
+    }
+
+    /**
+     * Chunk coordinates at a position of the visiting order.
+     */
+    public int[] getChunkAt(long position) {
+        if (this.mode == MODE_REGIONS) {
+            int region = (int) (position / REGION_CHUNKS) << 1;
+            int offset = (int) (position % REGION_CHUNKS);
+            return new int[]{(this.regions[region] << 5) | (offset & 0x1f), (this.regions[region | 1] << 5) | (offset >> 5)};
+        }
+
+        if (position == 0) {
+            return new int[]{this.centerX, this.centerZ};
+        }
+
+        int ring = (int) ((Math.sqrt(position + 1) - 1) / 2);
+        while ((2L * ring + 1) * (2L * ring + 1) <= position) {
+            ++ring;
+        }
+        while (ring > 1 && (2L * ring - 1) * (2L * ring - 1) > position) {
+            --ring;
+        }
+
+        int offset = (int) (position - (2L * ring - 1) * (2L * ring - 1));
+        int length = ring << 1;
+        int step = offset % length;
+        int x;
+        int z;
+        switch (offset / length) {
+            case 0:
+                x = ring;
+                z = -ring + 1 + step;
+                break;
+            case 1:
+                x = ring - 1 - step;
+                z = ring;
+                break;
+            case 2:
+                x = -ring;
+                z = ring - 1 - step;
+                break;
+            default:
+                x = -ring + 1 + step;
+                z = -ring;
+                break;
+        }
+
+        return new int[]{this.centerX + x, this.centerZ + z};
+    }
+
+    public void save() {
+        Config config = new Config(new File(this.level.getProvider().getPath() + PROGRESS_FILE), Config.YAML);
+        config.set("mode", this.mode);
+        if (this.mode == MODE_REGIONS) {
+            List<String> list = new ArrayList<>();
+            for (int i = 0; i < this.regions.length; i += 2) {
+                list.add(this.regions[i] + ":" + this.regions[i + 1]);
+            }
+            config.set("regions", list);
+        } else {
+            config.set("centerX", this.centerX);
+            config.set("centerZ", this.centerZ);
+            config.set("radius", this.radius);
+        }
+        config.set("position", this.getResumePosition());
+        config.save();
+    }
+
+    private void deleteProgress() {
+        File file = new File(this.level.getProvider().getPath() + PROGRESS_FILE);
+        if (file.exists() && !file.delete()) {
+            this.level.getServer().getLogger().warning("Could not delete " + file.getPath());
+        }
+    }
+
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    public boolean isFinished() {
+        return this.completed >= this.total;
+    }
+
+    public boolean isThrottled() {
+        return this.running && this.throttled;
+    }
+
+    public int getMode() {
+        return this.mode;
+    }
+
+    public long getTotal() {
+        return this.total;
+    }
+
+    public long getCompleted() {
+        return this.completed;
+    }
+
+    public int getPending() {
+        return this.pending.size();
+    }
+
+    public double getProgress() {
+        return this.total == 0 ? 100 : this.completed * 100d / this.total;
+    }
+
+    /**
+     * Chunks finished per second since the pregeneration was last started.
+     */
+    public double getChunksPerSecond() {
+        long time = System.currentTimeMillis() - this.startTime;
+        return !this.running || time <= 0 ? 0 : (this.completed - this.startCompleted) * 1000d / time;
+    }
+
+    public int getChunksPerTick() {
+        return this.chunksPerTick;
+    }
+
+    public void setChunksPerTick(int chunksPerTick) {
+        this.chunksPerTick = Math.max(1, chunksPerTick);
+    }
+
+    public int getMaxPending() {
+        return this.maxPending;
+    }
+
+    public void setMaxPending(int maxPending) {
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    public double getMinTps() {
+        return this.minTps;
+    }
+
+    public void setMinTps(double minTps) {
+        this.minTps = minTps;
+    }
+
+    @Override
+    public Integer getLoaderId() {
+        return this.loaderId;
+    }
+
+    @Override
+    public boolean isLoaderActive() {
+        return this.running;
+    }
+
+    @Override
+    public Position getPosition() {
+        return new Position(this.getX(), 0, this.getZ(), this.level);
+    }
+
+    @Override
+    public double getX() {
+        return this.mode == MODE_RADIUS ? this.centerX << 4 : 0;
+    }
+
+    @Override
+    public double getZ() {
+        return this.mode == MODE_RADIUS ? this.centerZ << 4 : 0;
+    }
+
+    @Override
+    public Level getLevel() {
+        return this.level;
+    }
+
+    @Override
+    public void onChunkChanged(FullChunk chunk) {
+
+    }
+
+    @Override
+    public void onChunkLoaded(FullChunk chunk) {
+
+    }
+
+    @Override
+    public void onChunkUnloaded(FullChunk chunk) {
+
+    }
+
+    @Override
+    public void onChunkPopulated(FullChunk chunk) {
+
+    }
+
+    @Override
+    public void onBlockChanged(Vector3 block) {
+
+    }
+}
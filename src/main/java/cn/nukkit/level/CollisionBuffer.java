@@ -0,0 +1,79 @@
+package cn.nukkit.level;
+
+import cn.nukkit.entity.Entity;
+import cn.nukkit.math.AxisAlignedBB;
+
+/**
+ * Reusable per-thread list of bounding boxes for collision checks. Callers must not keep the boxes. As a visitor it
+ * adds the boxes of the entities it visits.
+ */
+public class CollisionBuffer implements EntityVisitor {
+
+    private static final ThreadLocal<CollisionBuffer> buffers = ThreadLocal.withInitial(CollisionBuffer::new);
+
+    private AxisAlignedBB[] boxes = new AxisAlignedBB[16];
+    private int size = 0;
+
+    /**
+     * The buffer of the current thread, emptied.
+     */
+    public static CollisionBuffer get() {
+        CollisionBuffer buffer = buffers.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public AxisAlignedBB get(int index) {
+        return this.boxes[index];
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public AxisAlignedBB add(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (this.size == this.boxes.length) {
+            AxisAlignedBB[] boxes = new AxisAlignedBB[this.size << 1];
+            System.arraycopy(this.boxes, 0, boxes, 0, this.size);
+            this.boxes = boxes;
+        }
+
+        AxisAlignedBB bb = this.boxes[this.size];
+        if (bb == null) {
+            bb = this.boxes[this.size] = new AxisAlignedBB(minX, minY, minZ, maxX, maxY, maxZ);
+        } else {
+            bb.setBounds(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        ++this.size;
+        return bb;
+    }
+
+    public AxisAlignedBB add(AxisAlignedBB bb) {
+        return this.add(bb.minX, bb.minY, bb.minZ, bb.maxX, bb.maxY, bb.maxZ);
+    }
+
+    @Override
+    public boolean visit(Entity entity) {
+        this.add(entity.boundingBox);
+        return true;
+    }
+
+    /**
+     * Copies of the boxes, which the caller may keep.
+     */
+    public AxisAlignedBB[] toArray() {
+        AxisAlignedBB[] array = new AxisAlignedBB[this.size];
+        for (int i = 0; i < this.size; ++i) {
+            array[i] = this.boxes[i].clone();
+        }
+        return array;
+    }
+}
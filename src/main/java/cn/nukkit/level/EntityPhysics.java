@@ -0,0 +1,303 @@
+package cn.nukkit.level;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.entity.DroppedItem;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.entity.FallingSand;
+import cn.nukkit.entity.PrimedTNT;
+import cn.nukkit.entity.Projectile;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.math.AxisAlignedBB;
+import cn.nukkit.math.NukkitMath;
+import cn.nukkit.math.Vector3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Collects the block collision boxes of physics-only entities on a fork-join pool before they are updated.
+ */
+public class EntityPhysics {
+
+    //Fewer entities than this are not worth handing to the pool
+    private static final int MIN_PARALLEL = 32;
+    private static final int BATCH_SIZE = 16;
+
+    private final Level level;
+    private final ForkJoinPool pool;
+
+    private final List<Entity> entities = new ArrayList<>();
+
+    private int lastTickEntities = 0;
+
+    /**
+     * @param threads threads of the pool, 0 to turn the stage off
+     */
+    public EntityPhysics(Level level, int threads) {
+        this.level = level;
+        this.pool = threads > 0 ? new ForkJoinPool(threads) : null;
+    }
+
+    public boolean isEnabled() {
+        return this.pool != null;
+    }
+
+    /**
+     * Number of entities whose collisions were collected in parallel in the last tick.
+     */
+    public int getLastTickEntities() {
+        return this.lastTickEntities;
+    }
+
+    public static boolean isPhysicsEntity(Entity entity) {
+        return entity instanceof DroppedItem || entity instanceof FallingSand || entity instanceof Projectile || entity instanceof PrimedTNT;
+    }
+
+    /**
+     * Collects the collision boxes of the physics entities among the given ones that will be updated in this tick.
+     */
+    public void prefetch(Collection<Entity> updateEntities, ActivationRange activationRange, int currentTick) {
+        this.lastTickEntities = 0;
+        if (this.pool == null) {
+            return;
+        }
+        this.release();
+
+        for (Entity entity : updateEntities) {
+            if (entity.closed || entity.keepMovement || !isPhysicsEntity(entity) || !activationRange.willUpdate(entity, currentTick)) {
+                continue;
+            }
+            if (entity instanceof DroppedItem && ((DroppedItem) entity).isResting()) {
+                continue;
+            }
+            this.entities.add(entity);
+        }
+
+        if (this.entities.size() >= MIN_PARALLEL) {
+            this.pool.invoke(new PrefetchTask(0, this.entities.size()));
+            this.lastTickEntities = this.entities.size();
+        } else {
+            this.entities.clear();
+        }
+    }
+
+    /**
+     * Clears the snapshots of the last prefetch once the entities were updated, so they do not keep unloaded chunks.
+     */
+    public void release() {
+        for (Entity entity : this.entities) {
+            if (entity.physicsSnapshot != null) {
+                entity.physicsSnapshot.clear();
+            }
+        }
+        this.entities.clear();
+    }
+
+    public void close() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    private class PrefetchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        private PrefetchTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > BATCH_SIZE) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new PrefetchTask(this.from, middle), new PrefetchTask(middle, this.to));
+                return;
+            }
+
+            for (int i = this.from; i < this.to; ++i) {
+                Entity entity = entities.get(i);
+                if (entity.physicsSnapshot == null) {
+                    entity.physicsSnapshot = new Snapshot();
+                }
+
+                //The move of the update, with and without the gravity it applies first
+                AxisAlignedBB region = entity.boundingBox.addCoord(entity.motionX, entity.motionY, entity.motionZ).addCoord(0, -entity.getGravity(), 0);
+                entity.physicsSnapshot.fill(level, region);
+            }
+        }
+    }
+
+    /**
+     * Block collision boxes of a region, valid while the chunks they were read from are unchanged.
+     */
+    public static class Snapshot {
+
+        private boolean valid = false;
+
+        //Chunks the boxes depend on, with their block versions at the time
+        private int chunkCount = 0;
+        private BaseFullChunk[] chunks = new BaseFullChunk[4];
+        private int[] versions = new int[4];
+
+        private int minX;
+        private int minY;
+        private int minZ;
+        private int maxX;
+        private int maxY;
+        private int maxZ;
+
+        private int size = 0;
+        private int[] cells = new int[48];
+        private AxisAlignedBB[] boxes = new AxisAlignedBB[16];
+
+        private void fill(Level level, AxisAlignedBB bb) {
+            this.valid = false;
+            this.size = 0;
+            this.chunkCount = 0;
+
+            this.minX = NukkitMath.floorDouble(bb.minX);
+            this.minY = Math.max(0, NukkitMath.floorDouble(bb.minY));
+            this.minZ = NukkitMath.floorDouble(bb.minZ);
+            this.maxX = NukkitMath.ceilDouble(bb.maxX);
+            this.maxY = Math.min(127, NukkitMath.ceilDouble(bb.maxY));
+            this.maxZ = NukkitMath.ceilDouble(bb.maxZ);
+
+            for (int z = this.minZ; z <= this.maxZ; ++z) {
+                FullChunk chunk = null;
+                for (int x = this.minX; x <= this.maxX; ++x) {
+                    if (chunk == null || (x & 0x0f) == 0) {
+                        chunk = level.getLoadedChunk(x >> 4, z >> 4);
+                        //The scan of the move would load the chunk, leave that to it
+                        if (chunk == null) {
+                            return;
+                        }
+                    }
+
+                    for (int y = this.minY; y <= this.maxY; ++y) {
+                        int fullId = chunk.getFullBlock(x & 0x0f, y, z & 0x0f);
+                        if (Block.passThrough[fullId]) {
+                            continue;
+                        }
+
+                        if (Block.dynamicBoundingBox[fullId >> 4]) {
+                            Block block = level.getBlock(new Vector3(x, y, z));
+                            AxisAlignedBB box;
+                            if (!block.canPassThrough() && (box = block.getBoundingBox()) != null) {
+                                this.add(x, y, z, box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+                            }
+                            continue;
+                        }
+
+                        AxisAlignedBB shape = Block.boundingBoxes[fullId];
+                        if (shape != null) {
+                            this.add(x, y, z, x + shape.minX, y + shape.minY, z + shape.minZ, x + shape.maxX, y + shape.maxY, z + shape.maxZ);
+                        }
+                    }
+                }
+            }
+
+            //Dynamic boxes also depend on the blocks next to them
+            for (int chunkZ = (this.minZ - 1) >> 4; chunkZ <= (this.maxZ + 1) >> 4; ++chunkZ) {
+                for (int chunkX = (this.minX - 1) >> 4; chunkX <= (this.maxX + 1) >> 4; ++chunkX) {
+                    BaseFullChunk chunk = level.getLoadedChunk(chunkX, chunkZ);
+                    if (chunk == null) {
+                        return;
+                    }
+                    this.watch(chunk);
+                }
+            }
+
+            this.valid = true;
+        }
+
+        private void clear() {
+            this.valid = false;
+            this.size = 0;
+            Arrays.fill(this.chunks, 0, this.chunkCount, null);
+            this.chunkCount = 0;
+        }
+
+        private void watch(BaseFullChunk chunk) {
+            if (this.chunkCount == this.chunks.length) {
+                BaseFullChunk[] chunks = new BaseFullChunk[this.chunkCount << 1];
+                System.arraycopy(this.chunks, 0, chunks, 0, this.chunkCount);
+                this.chunks = chunks;
+                int[] versions = new int[this.chunkCount << 1];
+                System.arraycopy(this.versions, 0, versions, 0, this.chunkCount);
+                this.versions = versions;
+            }
+
+            this.chunks[this.chunkCount] = chunk;
+            this.versions[this.chunkCount] = chunk.getBlockVersion();
+            ++this.chunkCount;
+        }
+
+        private void add(int x, int y, int z, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+            if (this.size == this.boxes.length) {
+                AxisAlignedBB[] boxes = new AxisAlignedBB[this.size << 1];
+                System.arraycopy(this.boxes, 0, boxes, 0, this.size);
+                this.boxes = boxes;
+                int[] cells = new int[this.size * 6];
+                System.arraycopy(this.cells, 0, cells, 0, this.size * 3);
+                this.cells = cells;
+            }
+
+            AxisAlignedBB bb = this.boxes[this.size];
+            if (bb == null) {
+                this.boxes[this.size] = new AxisAlignedBB(minX, minY, minZ, maxX, maxY, maxZ);
+            } else {
+                bb.setBounds(minX, minY, minZ, maxX, maxY, maxZ);
+            }
+            this.cells[this.size * 3] = x;
+            this.cells[this.size * 3 + 1] = y;
+            this.cells[this.size * 3 + 2] = z;
+            ++this.size;
+        }
+
+        /**
+         * Appends the boxes the block scan of {@link Level#getCollisionCubes} would find for a box to a buffer.
+         * Returns false, leaving the buffer untouched, if the snapshot is outdated or does not cover the box.
+         */
+        public boolean collect(Level level, AxisAlignedBB bb, CollisionBuffer buffer) {
+            if (!this.valid) {
+                return false;
+            }
+            for (int i = 0; i < this.chunkCount; ++i) {
+                if (this.chunks[i].getBlockVersion() != this.versions[i]) {
+                    return false;
+                }
+            }
+
+            int minX = NukkitMath.floorDouble(bb.minX);
+            int minY = Math.max(0, NukkitMath.floorDouble(bb.minY));
+            int minZ = NukkitMath.floorDouble(bb.minZ);
+            int maxX = NukkitMath.ceilDouble(bb.maxX);
+            int maxY = Math.min(127, NukkitMath.ceilDouble(bb.maxY));
+            int maxZ = NukkitMath.ceilDouble(bb.maxZ);
+            if (minX < this.minX || minY < this.minY || minZ < this.minZ || maxX > this.maxX || maxY > this.maxY || maxZ > this.maxZ) {
+                return false;
+            }
+
+            for (int i = 0; i < this.size; ++i) {
+                int x = this.cells[i * 3];
+                int y = this.cells[i * 3 + 1];
+                int z = this.cells[i * 3 + 2];
+                AxisAlignedBB box = this.boxes[i];
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ && bb.intersectsWith(box)) {
+                    buffer.add(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cn.nukkit.level;
+
+import cn.nukkit.entity.Entity;
+import cn.nukkit.math.AxisAlignedBB;
+import cn.nukkit.math.NukkitMath;
+import cn.nukkit.utils.LongObjectMap;
+
+/**
+ * Spatial hash of the entities of a level, by the 8x8x8 block cell of their position.
+ */
+public class EntitySpatialIndex {
+
+    public static final int CELL_SHIFT = 3;
+
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    private final LongObjectMap<Cell> cells = new LongObjectMap<>(32);
+
+    private int entityCount = 0;
+
+    private double maxHalfWidth = 1;
+    private double maxHeight = 2;
+
+    public int size() {
+        return this.entityCount;
+    }
+
+    public void add(Entity entity) {
+        if (entity.spatialSlot >= 0) {
+            this.remove(entity);
+        }
+
+        this.maxHalfWidth = Math.max(this.maxHalfWidth, Math.max(entity.width, entity.length) / 2);
+        this.maxHeight = Math.max(this.maxHeight, entity.height);
+
+        long key = cellKey(NukkitMath.floorDouble(entity.x) >> CELL_SHIFT, NukkitMath.floorDouble(entity.y) >> CELL_SHIFT, NukkitMath.floorDouble(entity.z) >> CELL_SHIFT);
+        Cell cell = this.cells.get(key);
+        if (cell == null) {
+            this.cells.put(key, cell = new Cell());
+        }
+        cell.add(entity);
+        entity.spatialCell = key;
+        ++this.entityCount;
+    }
+
+    public void remove(Entity entity) {
+        if (entity.spatialSlot < 0) {
+            return;
+        }
+
+        Cell cell = this.cells.get(entity.spatialCell);
+        if (cell != null) {
+            cell.remove(entity.spatialSlot);
+            if (cell.size == 0) {
+                this.cells.remove(entity.spatialCell);
+            }
+        }
+        entity.spatialSlot = -1;
+        entity.spatialCell = NO_CELL;
+        --this.entityCount;
+    }
+
+    /**
+     * Moves an entity to the cell of its current position. Does nothing for entities that are not indexed.
+     */
+    public void update(Entity entity) {
+        if (entity.spatialSlot < 0) {
+            return;
+        }
+
+        long key = cellKey(NukkitMath.floorDouble(entity.x) >> CELL_SHIFT, NukkitMath.floorDouble(entity.y) >> CELL_SHIFT, NukkitMath.floorDouble(entity.z) >> CELL_SHIFT);
+        if (key != entity.spatialCell) {
+            this.remove(entity);
+            this.add(entity);
+        }
+    }
+
+    /**
+     * Visits every entity whose bounding box intersects the given box. Returns false if the visitor stopped early.
+     */
+    public boolean forEachIntersecting(AxisAlignedBB bb, EntityVisitor visitor) {
+        //Entities are indexed by their position, which can be up to their size away from the box edges
+        int minX = NukkitMath.floorDouble(bb.minX - this.maxHalfWidth - 1) >> CELL_SHIFT;
+        int minY = NukkitMath.floorDouble(bb.minY - this.maxHeight - 1) >> CELL_SHIFT;
+        int minZ = NukkitMath.floorDouble(bb.minZ - this.maxHalfWidth - 1) >> CELL_SHIFT;
+        int maxX = NukkitMath.floorDouble(bb.maxX + this.maxHalfWidth + 1) >> CELL_SHIFT;
+        int maxY = NukkitMath.floorDouble(bb.maxY + 1) >> CELL_SHIFT;
+        int maxZ = NukkitMath.floorDouble(bb.maxZ + this.maxHalfWidth + 1) >> CELL_SHIFT;
+
+        for (int x = minX; x <= maxX; ++x) {
+            for (int z = minZ; z <= maxZ; ++z) {
+                for (int y = minY; y <= maxY; ++y) {
+                    Cell cell = this.cells.get(cellKey(x, y, z));
+                    if (cell == null) {
+                        continue;
+                    }
+
+                    Entity[] entities = cell.entities;
+                    for (int i = 0; i < cell.size; ++i) {
+                        Entity entity = entities[i];
+                        if (entity.boundingBox.intersectsWith(bb) && !visitor.visit(entity)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return (((long) x & 0x3fffff) << 42) | (((long) z & 0x3fffff) << 20) | ((long) y & 0xfffff);
+    }
+
+    private static class Cell {
+
+        private Entity[] entities = new Entity[4];
+        private int size = 0;
+
+        private void add(Entity entity) {
+            if (this.size == this.entities.length) {
+                Entity[] entities = new Entity[this.size << 1];
+                System.arraycopy(this.entities, 0, entities, 0, this.size);
+                this.entities = entities;
+            }
+            entity.spatialSlot = this.size;
+            this.entities[this.size++] = entity;
+        }
+
+        private void remove(int slot) {
+            Entity last = this.entities[--this.size];
+            this.entities[slot] = last;
+            last.spatialSlot = slot;
+            this.entities[this.size] = null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package cn.nukkit.level;
+
+import cn.nukkit.entity.Entity;
+
+/**
+ * Callback of the entity proximity queries of a level. It must not add, remove or move entities.
+ */
+public interface EntityVisitor {
+
+    /**
+     * Returns false to stop the query.
+     */
+    boolean visit(Entity entity);
+}
@@ -1,9 +1,36 @@
 package cn.nukkit.level;
 
 import cn.nukkit.block.Block;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.event.entity.EntityDamageByBlockEvent;
+import cn.nukkit.event.entity.EntityDamageByEntityEvent;
+import cn.nukkit.event.entity.EntityDamageEvent;
+import cn.nukkit.event.entity.EntityExplodeEvent;
+import cn.nukkit.item.Item;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.math.AxisAlignedBB;
+import cn.nukkit.math.NukkitMath;
+import cn.nukkit.math.Vector3;
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.DoubleTag;
+import cn.nukkit.nbt.tag.FloatTag;
+import cn.nukkit.nbt.tag.ListTag;
+import cn.nukkit.network.protocol.ExplodePacket;
+import cn.nukkit.tile.Tile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 /**
  * Created on 15-10-27.
+ * <p>
+ * {@link #explodeA()} casts the rays and records the blocks they destroy, reading block states and resistances
+ * straight from the chunks. {@link #explodeB()} damages the entities around the explosion and removes all recorded
+ * blocks in one pass, sending a single explode packet and the batched block changes of the tick.
  */
 public class Explosion {
 
@@ -12,11 +39,22 @@ public class Explosion {
     private Position source;
     private float size;
 
-    private Block[] affectedBlocks;
     private float stepLen = 0.3F;
 
     private Object what;
 
+    private boolean blockBreaking = true;
+
+    //Blocks destroyed by the explosion, as positions per chunk
+    private Map<String, ChunkBlockDelta> affectedBlocks = new HashMap<>();
+    private ChunkBlockDelta delta = null;
+
+    private FullChunk chunk = null;
+    private int chunkX;
+    private int chunkZ;
+
+    private final Random random = new Random();
+
     public Explosion(Position center, float size, Object what) {
         this.level = center.getLevel();
         this.source = center;
@@ -24,6 +62,18 @@ public class Explosion {
         this.what = what;
     }
 
+    public Level getLevel() {
+        return this.level;
+    }
+
+    public boolean isBlockBreaking() {
+        return this.blockBreaking;
+    }
+
+    public void setBlockBreaking(boolean blockBreaking) {
+        this.blockBreaking = blockBreaking;
+    }
+
     /**
      * @return bool
      * @deprecated
@@ -36,16 +86,244 @@ public class Explosion {
     }
 
     /**
+     * Casts the rays of the explosion and records the blocks they destroy.
+     *
      * @return bool
      */
     public boolean explodeA() {
-        // TODO
-        return false;
+        if (this.size < 0.1) {
+            return false;
+        }
+
+        int mRays = this.rays - 1;
+        for (int i = 0; i < this.rays; ++i) {
+            for (int j = 0; j < this.rays; ++j) {
+                for (int k = 0; k < this.rays; ++k) {
+                    if (i == 0 || i == mRays || j == 0 || j == mRays || k == 0 || k == mRays) {
+                        double vectorX = (double) i / mRays * 2 - 1;
+                        double vectorY = (double) j / mRays * 2 - 1;
+                        double vectorZ = (double) k / mRays * 2 - 1;
+                        double length = Math.sqrt(vectorX * vectorX + vectorY * vectorY + vectorZ * vectorZ);
+                        vectorX = vectorX / length * this.stepLen;
+                        vectorY = vectorY / length * this.stepLen;
+                        vectorZ = vectorZ / length * this.stepLen;
+
+                        this.castRay(vectorX, vectorY, vectorZ);
+                    }
+                }
+            }
+        }
+
+        this.chunk = null;
+        return true;
+    }
+
+    private void castRay(double vectorX, double vectorY, double vectorZ) {
+        double pointerX = this.source.x;
+        double pointerY = this.source.y;
+        double pointerZ = this.source.z;
+
+        for (double blastForce = this.size * (0.7 + this.random.nextDouble() * 0.6); blastForce > 0; blastForce -= this.stepLen * 0.75) {
+            int x = NukkitMath.floorDouble(pointerX);
+            int y = NukkitMath.floorDouble(pointerY);
+            int z = NukkitMath.floorDouble(pointerZ);
+            if (y < 0 || y >= 128) {
+                break;
+            }
+
+            int state = this.getState(x, y, z);
+            //Rays stop at unloaded chunks
+            if (state < 0) {
+                break;
+            }
+
+            if ((state >> 4) != Block.AIR) {
+                blastForce -= (Block.resistance[state] / 5 + 0.3) * this.stepLen;
+                if (blastForce > 0) {
+                    this.addAffectedBlock(x, y, z);
+                }
+            }
+
+            pointerX += vectorX;
+            pointerY += vectorY;
+            pointerZ += vectorZ;
+        }
     }
 
+    /**
+     * Damages the entities around the explosion and removes the recorded blocks.
+     */
     public boolean explodeB() {
-        // TODO
-        return false;
+        double yield = (1d / this.size) * 100;
+
+        if (this.what instanceof Entity && EntityExplodeEvent.getHandlers().getRegisteredListeners().length > 0) {
+            List<Block> blocks = new ArrayList<>();
+            for (ChunkBlockDelta delta : this.affectedBlocks.values()) {
+                int baseX = delta.getChunkX() << 4;
+                int baseZ = delta.getChunkZ() << 4;
+                for (int index : delta.getIndices()) {
+                    blocks.add(this.level.getBlock(new Vector3(baseX | (index & 0x0f), index >> 8, baseZ | ((index >> 4) & 0x0f))));
+                }
+            }
+
+            EntityExplodeEvent ev = new EntityExplodeEvent((Entity) this.what, this.source, blocks, yield);
+            this.level.getServer().getPluginManager().callEvent(ev);
+            if (ev.isCancelled()) {
+                return false;
+            }
+
+            yield = ev.getYield();
+            this.affectedBlocks = new HashMap<>();
+            this.delta = null;
+            for (Block block : ev.getBlockList()) {
+                this.addAffectedBlock((int) block.x, (int) block.y, (int) block.z);
+            }
+        }
+
+        this.damageEntities();
+
+        int sourceX = NukkitMath.floorDouble(this.source.x);
+        int sourceY = NukkitMath.floorDouble(this.source.y);
+        int sourceZ = NukkitMath.floorDouble(this.source.z);
+
+        int count = 0;
+        for (ChunkBlockDelta delta : this.affectedBlocks.values()) {
+            count += delta.size();
+        }
+        Vector3[] records = new Vector3[count];
+        int n = 0;
+
+        Item air = Item.get(Item.AIR);
+        for (ChunkBlockDelta delta : this.affectedBlocks.values()) {
+            FullChunk chunk = this.level.getLoadedChunk(delta.getChunkX(), delta.getChunkZ());
+            if (chunk == null) {
+                continue;
+            }
+
+            int baseX = delta.getChunkX() << 4;
+            int baseZ = delta.getChunkZ() << 4;
+            for (int index : delta.getIndices()) {
+                int x = index & 0x0f;
+                int y = index >> 8;
+                int z = (index >> 4) & 0x0f;
+                int state = chunk.getFullBlock(x, y, z) & 0xfff;
+
+                if ((state >> 4) == Block.TNT) {
+                    this.primeTNT(chunk, baseX | x, y, baseZ | z);
+                } else if (this.random.nextDouble() * 100 < yield) {
+                    for (int[] drop : Block.fullList[state].getDrops(air)) {
+                        this.level.dropItem(new Vector3(baseX + x + 0.5, y + 0.5, baseZ + z + 0.5), Item.get(drop[0], drop[1], drop[2]));
+                    }
+                }
+
+                Tile tile = chunk.getTile(x, y, z);
+                if (tile != null) {
+                    tile.close();
+                }
+
+                records[n++] = new Vector3((baseX | x) - sourceX, y - sourceY, (baseZ | z) - sourceZ);
+            }
+        }
+
+        this.level.clearBlocks(this.affectedBlocks.values());
+
+        ExplodePacket pk = new ExplodePacket();
+        pk.x = (float) this.source.x;
+        pk.y = (float) this.source.y;
+        pk.z = (float) this.source.z;
+        pk.radius = this.size;
+        pk.records = n == records.length ? records : Arrays.copyOf(records, n);
+        this.level.addChunkPacket(sourceX >> 4, sourceZ >> 4, pk);
+
+        return true;
     }
 
+    private void damageEntities() {
+        double explosionSize = this.size * 2;
+        AxisAlignedBB explosionBB = new AxisAlignedBB(
+                NukkitMath.floorDouble(this.source.x - explosionSize - 1),
+                NukkitMath.floorDouble(this.source.y - explosionSize - 1),
+                NukkitMath.floorDouble(this.source.z - explosionSize - 1),
+                NukkitMath.ceilDouble(this.source.x + explosionSize + 1),
+                NukkitMath.ceilDouble(this.source.y + explosionSize + 1),
+                NukkitMath.ceilDouble(this.source.z + explosionSize + 1)
+        );
+
+        //Attacking can remove entities from the level, so collect them first
+        for (Entity entity : this.level.getNearbyEntities(explosionBB, this.what instanceof Entity ? (Entity) this.what : null)) {
+            double distance = entity.distance(this.source) / explosionSize;
+            if (distance > 1) {
+                continue;
+            }
+
+            Vector3 motion = entity.subtract(this.source).normalize();
+            double impact = 1 - distance;
+            float damage = (int) (((impact * impact + impact) / 2) * 8 * explosionSize + 1);
+
+            EntityDamageEvent ev;
+            if (this.what instanceof Entity) {
+                ev = new EntityDamageByEntityEvent((Entity) this.what, entity, EntityDamageEvent.CAUSE_ENTITY_EXPLOSION, damage);
+            } else if (this.what instanceof Block) {
+                ev = new EntityDamageByBlockEvent((Block) this.what, entity, EntityDamageEvent.CAUSE_BLOCK_EXPLOSION, damage);
+            } else {
+                ev = new EntityDamageEvent(entity, EntityDamageEvent.CAUSE_BLOCK_EXPLOSION, damage);
+            }
+
+            entity.attack(ev.getFinalDamage(), ev);
+            entity.setMotion(motion.multiply(impact));
+        }
+    }
+
+    private void primeTNT(FullChunk chunk, int x, int y, int z) {
+        double mot = this.random.nextDouble() * Math.PI * 2;
+        Entity tnt = Entity.createEntity("PrimedTNT", chunk, new CompoundTag()
+                .putList(new ListTag<DoubleTag>("Pos")
+                        .add(new DoubleTag("", x + 0.5))
+                        .add(new DoubleTag("", y))
+                        .add(new DoubleTag("", z + 0.5)))
+                .putList(new ListTag<DoubleTag>("Motion")
+                        .add(new DoubleTag("", -Math.sin(mot) * 0.02))
+                        .add(new DoubleTag("", 0.2))
+                        .add(new DoubleTag("", -Math.cos(mot) * 0.02)))
+                .putList(new ListTag<FloatTag>("Rotation")
+                        .add(new FloatTag("", 0))
+                        .add(new FloatTag("", 0)))
+                .putByte("Fuse", (byte) (10 + this.random.nextInt(21)))
+        );
+
+        if (tnt != null) {
+            tnt.spawnToAll();
+        }
+    }
+
+    private void addAffectedBlock(int x, int y, int z) {
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        if (this.delta == null || this.delta.getChunkX() != chunkX || this.delta.getChunkZ() != chunkZ) {
+            String index = Level.chunkHash(chunkX, chunkZ);
+            this.delta = this.affectedBlocks.get(index);
+            if (this.delta == null) {
+                this.affectedBlocks.put(index, this.delta = new ChunkBlockDelta(chunkX, chunkZ));
+            }
+        }
+        this.delta.add(x & 0x0f, y, z & 0x0f);
+    }
+
+    /**
+     * Full block state at the given position, or -1 if its chunk is not loaded.
+     */
+    private int getState(int x, int y, int z) {
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        if (this.chunk == null || this.chunkX != chunkX || this.chunkZ != chunkZ) {
+            this.chunk = this.level.getLoadedChunk(chunkX, chunkZ);
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            if (this.chunk == null) {
+                return -1;
+            }
+        }
+
+        return this.chunk.getFullBlock(x & 0x0f, y, z & 0x0f) & 0xfff;
+    }
 }
@@ -0,0 +1,128 @@
+package cn.nukkit.level;
+
+import cn.nukkit.entity.DroppedItem;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.item.Item;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges nearby dropped items of the same kind within a chunk into one stack.
+ */
+public class ItemMerger {
+
+    private static final double MERGE_RADIUS_XZ = 0.5;
+    private static final double MERGE_RADIUS_Y = 0.5;
+
+    private final Level level;
+    private final int interval;
+
+    private final Map<Integer, List<DroppedItem>> buckets = new HashMap<>();
+
+    private int merged = 0;
+
+    /**
+     * @param interval ticks between two merge passes, 0 to disable merging
+     */
+    public ItemMerger(Level level, int interval) {
+        this.level = level;
+        this.interval = interval;
+    }
+
+    /**
+     * Number of items merged away since the level was loaded.
+     */
+    public int getMergedCount() {
+        return this.merged;
+    }
+
+    public void tick(int currentTick) {
+        if (this.interval <= 0 || currentTick % this.interval != 0) {
+            return;
+        }
+
+        for (BaseFullChunk chunk : this.level.getChunks().values()) {
+            Map<Long, Entity> entities = chunk.getEntities();
+            if (entities.size() < 2) {
+                continue;
+            }
+
+            for (Entity entity : entities.values()) {
+                if (entity instanceof DroppedItem && !entity.closed && entity.isAlive() && ((DroppedItem) entity).getItem() != null) {
+                    int id = ((DroppedItem) entity).getItem().getId();
+                    List<DroppedItem> bucket = this.buckets.get(id);
+                    if (bucket == null) {
+                        this.buckets.put(id, bucket = new ArrayList<>());
+                    }
+                    bucket.add((DroppedItem) entity);
+                }
+            }
+
+            //Merging closes entities and removes them from the chunk, so the buckets are filled first
+            for (List<DroppedItem> bucket : this.buckets.values()) {
+                if (bucket.size() > 1) {
+                    this.mergeBucket(bucket);
+                }
+                bucket.clear();
+            }
+        }
+    }
+
+    private void mergeBucket(List<DroppedItem> bucket) {
+        for (int i = 0; i < bucket.size(); ++i) {
+            DroppedItem item = bucket.get(i);
+            if (item.closed) {
+                continue;
+            }
+
+            for (int j = i + 1; j < bucket.size(); ++j) {
+                DroppedItem other = bucket.get(j);
+                if (other.closed || !this.canMerge(item, other)) {
+                    continue;
+                }
+
+                //The larger stack stays, so fewer items change on the clients
+                if (other.getItem().getCount() > item.getItem().getCount()) {
+                    this.merge(item, other);
+                    break;
+                }
+                this.merge(other, item);
+            }
+        }
+    }
+
+    private boolean canMerge(DroppedItem item, DroppedItem other) {
+        if (Math.abs(item.x - other.x) > MERGE_RADIUS_XZ || Math.abs(item.z - other.z) > MERGE_RADIUS_XZ || Math.abs(item.y - other.y) > MERGE_RADIUS_Y) {
+            return false;
+        }
+
+        if (item.getPickupDelay() >= 32767 || other.getPickupDelay() >= 32767) {
+            return false;
+        }
+
+        Item a = item.getItem();
+        Item b = other.getItem();
+        return a.equals(b, true, true) && a.getCount() + b.getCount() <= a.getMaxStackSize();
+    }
+
+    /**
+     * Moves the stack of source into target and removes source.
+     */
+    private void merge(DroppedItem source, DroppedItem target) {
+        Item item = target.getItem();
+        item.setCount(item.getCount() + source.getItem().getCount());
+        target.setPickupDelay(Math.max(target.getPickupDelay(), source.getPickupDelay()));
+        target.setAge(Math.min(target.getAge(), source.getAge()));
+
+        source.close();
+        ++this.merged;
+
+        //Clients only learn the new count by spawning the item again
+        target.despawnFromAll();
+        target.spawnToAll();
+    }
+}
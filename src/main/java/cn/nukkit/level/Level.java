@@ -4,7 +4,6 @@ import cn.nukkit.Player;
 import cn.nukkit.Server;
 import cn.nukkit.block.Air;
 import cn.nukkit.block.Block;
-import cn.nukkit.block.Ice;
 import cn.nukkit.entity.Arrow;
 import cn.nukkit.entity.DroppedItem;
 import cn.nukkit.entity.Effect;
@@ -65,6 +64,11 @@ public class Level implements ChunkManager, Metadatable {
     public static final int BLOCK_UPDATE_WEAK = 4;
     public static final int BLOCK_UPDATE_TOUCH = 5;
 
+    private static final EntityVisitor NEARBY_BLOCK_CHANGE = entity -> {
+        entity.onNearbyBlockChange();
+        return true;
+    };
+
     public static final int TIME_DAY = 0;
     public static final int TIME_SUNSET = 12000;
     public static final int TIME_NIGHT = 14000;
@@ -72,22 +76,19 @@ public class Level implements ChunkManager, Metadatable {
 
     public static final int TIME_FULL = 24000;
 
-    private Map<Long, Tile> tiles = new HashMap<>();
+    private LongObjectMap<Tile> tiles = new LongObjectMap<>();
 
     private Map<String, Map<Long, SetEntityMotionPacket.Entry>> motionToSend = new HashMap<>();
-    private Map<String, Map<Long, MoveEntityPacket.Entry>> moveToSend = new HashMap<>();
-
-    private Map<Long, Player> players = new HashMap<>();
 
-    private Map<Long, Entity> entities = new HashMap<>();
+    private LongObjectMap<Player> players = new LongObjectMap<>();
 
-    public Map<Long, Entity> updateEntities = new HashMap<>();
+    private LongObjectMap<Entity> entities = new LongObjectMap<>();
 
-    public Map<Long, Tile> updateTiles = new HashMap<>();
+    public LongObjectMap<Entity> updateEntities = new LongObjectMap<>();
 
-    private Map<String, Block> blockCache = new HashMap<>();
+    public LongObjectMap<Tile> updateTiles = new LongObjectMap<>();
 
-    private Map<String, DataPacket> chunkCache = new HashMap<>();
+    private ChunkNetworkCache chunkCache;
 
     private boolean cacheChunks = false;
 
@@ -117,14 +118,30 @@ public class Level implements ChunkManager, Metadatable {
     private String folderName;
 
     private Map<String, BaseFullChunk> chunks = new HashMap<>();
+    //Chunk of the last getBlockState lookup, so runs of lookups in one chunk skip the string key
+    private LastChunk lastChunk = null;
+
+    private Map<String, ChunkBlockDelta> changedBlocks = new HashMap<>();
+    //Positions whose light changed, sent with the block changes of the tick
+    private Map<String, ChunkBlockDelta> changedLight = new HashMap<>();
+
+    private BlockUpdateScheduler updateQueue;
+    //Sleeping tiles by the tick they wake up, keyed by position
+    private BlockUpdateScheduler tileQueue;
+    private LiquidFlow liquidFlow;
 
-    private Map<String, Map<String, Vector3>> changedBlocks = new HashMap<>();
+    private ItemMerger itemMerger;
+    private ActivationRange activationRange;
+    private MovementBroadcaster movementBroadcaster;
+    private PlayerVisibility playerVisibility;
+    private EntityPhysics entityPhysics;
 
-    private PriorityQueue<PriorityObject> updateQueue;
-    private Map<String, Integer> updateQueueIndex = new HashMap<>();
+    private Queue<Explosion> explosionQueue = new ArrayDeque<>();
+    private int explosionsPerTick;
+    private int lastTickUpdates = 0;
 
     private Map<String, Map<Integer, Player>> chunkSendQueue = new HashMap<>();
-    private Map<String, Boolean> chunkSendTasks = new HashMap<>();
+    private Map<String, Integer> chunkSendTasks = new HashMap<>();
 
     private Map<String, Boolean> chunkPopulationQueue = new HashMap<>();
     private Map<String, Boolean> chunkPopulationLock = new HashMap<>();
@@ -132,6 +149,16 @@ public class Level implements ChunkManager, Metadatable {
     private int chunkGenerationQueueSize = 8;
     private int chunkPopulationQueueSize = 2;
 
+    private ChunkPregenerator pregenerator = null;
+
+    private final LightEngine lightEngine;
+
+    private final EntitySpatialIndex entityIndex = new EntitySpatialIndex();
+    private Map<String, ChunkBlockDelta> lightUpdates = new HashMap<>();
+    private LightUpdateTask lightUpdateTask = null;
+    private boolean asyncLightUpdates;
+    private int asyncLightThreshold;
+
     private boolean autoSave = true;
 
     private BlockMetadataStore blockMetadata;
@@ -150,10 +177,7 @@ public class Level implements ChunkManager, Metadatable {
     private Map<String, Integer> chunkTickList = new HashMap<>();
     private int chunksPerTicks;
     private boolean clearChunksOnTick;
-    private HashMap<Integer, Class<? extends Block>> randomTickBlocks = new HashMap<Integer, Class<? extends Block>>() {{
-        //todo alot blocks
-        put(Block.ICE, Ice.class);
-    }};
+    private boolean[] randomTickBlocks = new boolean[256];
 
     private int tickRate;
     public int tickRateTime = 0;
@@ -170,6 +194,8 @@ public class Level implements ChunkManager, Metadatable {
 
     public Level(Server server, String name, String path, Class<? extends LevelProvider> provider) {
         this.blockStates = Block.fullList;
+        //todo alot blocks
+        this.randomTickBlocks[Block.ICE] = true;
         this.levelId = levelIdCounter++;
         this.blockMetadata = new BlockMetadataStore(this);
         this.server = server;
@@ -193,12 +219,9 @@ public class Level implements ChunkManager, Metadatable {
         }
 
         this.folderName = name;
-        this.updateQueue = new PriorityQueue<>(11, new Comparator<PriorityObject>() {
-            @Override
-            public int compare(PriorityObject o1, PriorityObject o2) {
-                return o1.priority < o2.priority ? 1 : (o1.priority == o2.priority ? 0 : -1);
-            }
-        });
+        this.updateQueue = new BlockUpdateScheduler(this.server.getTick());
+        this.tileQueue = new BlockUpdateScheduler(this.server.getTick());
+        this.liquidFlow = new LiquidFlow(this, this.server.getTick(), (int) this.server.getConfig("chunk-ticking.liquid-tick-budget", 10));
         this.time = this.provider.getTime();
 
         this.chunkTickRadius = Math.min(this.server.getViewDistance(), Math.max(1, (Integer) this.server.getConfig("chunk-ticking.tick-radius", 4)));
@@ -208,6 +231,26 @@ public class Level implements ChunkManager, Metadatable {
         this.chunkTickList.clear();
         this.clearChunksOnTick = (boolean) this.server.getConfig("chunk-ticking.clear-tick-list", true);
         this.cacheChunks = (boolean) this.server.getConfig("chunk-sending.cache-chunks", false);
+        this.asyncLightUpdates = (boolean) this.server.getConfig("chunk-ticking.async-light-updates", false);
+        this.asyncLightThreshold = (int) this.server.getConfig("chunk-ticking.async-light-threshold", 512);
+        this.explosionsPerTick = Math.max(1, (int) this.server.getConfig("chunk-ticking.explosions-per-tick", 8));
+        this.itemMerger = new ItemMerger(this, (int) this.server.getConfig("chunk-ticking.item-merge-interval", 20));
+        this.activationRange = new ActivationRange(this,
+                (int) this.server.getConfig("chunk-ticking.activation-range.monsters", 32),
+                (int) this.server.getConfig("chunk-ticking.activation-range.animals", 32),
+                (int) this.server.getConfig("chunk-ticking.activation-range.items", 16),
+                (int) this.server.getConfig("chunk-ticking.activation-range.misc", 16),
+                (int) this.server.getConfig("chunk-ticking.activation-range.inactive-tick-interval", 20));
+        this.movementBroadcaster = new MovementBroadcaster(this,
+                (int) this.server.getConfig("chunk-ticking.entity-movement.near-radius", 4),
+                (int) this.server.getConfig("chunk-ticking.entity-movement.far-interval", 3));
+        this.playerVisibility = new PlayerVisibility(this,
+                (int) this.server.getConfig("chunk-ticking.player-visibility.max-players", 0),
+                (int) this.server.getConfig("chunk-ticking.player-visibility.rebalance-interval", 20));
+        this.entityPhysics = new EntityPhysics(this, (int) this.server.getConfig("chunk-ticking.physics-threads", 0));
+        this.chunkCache = new ChunkNetworkCache((int) this.server.getConfig("chunk-sending.cache-memory", 64) * 1024L * 1024L);
+        this.lightEngine = new LightEngine(this);
+        this.lightEngine.setRecordChanges(true);
 
         this.temporalPosition = new Position(0, 0, 0, this);
         this.temporalVector = new Vector3(0, 0, 0);
@@ -265,11 +308,46 @@ public class Level implements ChunkManager, Metadatable {
         this.generatorInstance.init(this, new Random(this.getSeed()));
 
         this.registerGenerator();
+
+        this.pregenerator = ChunkPregenerator.load(this);
+        if (this.pregenerator != null) {
+            this.server.getLogger().info("Resuming pregeneration of level \"" + this.folderName + "\" at " + this.pregenerator.getCompleted() + "/" + this.pregenerator.getTotal() + " chunks");
+            this.pregenerator.start();
+        }
+    }
+
+    public ChunkPregenerator getPregenerator() {
+        return this.pregenerator;
+    }
+
+    public void startPregeneration(ChunkPregenerator pregenerator) {
+        if (pregenerator.getLevel() != this) {
+            throw new IllegalArgumentException("Pregenerator belongs to another level");
+        }
+        if (this.pregenerator != null) {
+            this.pregenerator.cancel();
+        }
+        this.pregenerator = pregenerator;
+        pregenerator.start();
+    }
+
+    public boolean stopPregeneration() {
+        if (this.pregenerator == null || !this.pregenerator.isRunning()) {
+            return false;
+        }
+        this.pregenerator.cancel();
+        return true;
     }
 
     public void registerGenerator() {
-        int size = this.server.getScheduler().getAsyncTaskPoolSize();
-        for (int i = 0; i < size; ++i) {
+        this.registerGenerator(0, this.server.getScheduler().getAsyncTaskPoolSize());
+    }
+
+    /**
+     * Registers the generator on the async workers from the first given one up to the second, excluded.
+     */
+    public void registerGenerator(int fromWorker, int toWorker) {
+        for (int i = fromWorker; i < toWorker; ++i) {
             this.server.getScheduler().scheduleAsyncTaskToWorker(new GeneratorRegisterTask(this, this.generatorInstance), i);
         }
     }
@@ -298,6 +376,10 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public void close() {
+        if (this.pregenerator != null) {
+            this.pregenerator.pause();
+        }
+
         if (this.getAutoSave()) {
             this.save();
         }
@@ -307,11 +389,12 @@ public class Level implements ChunkManager, Metadatable {
         }
 
         this.unregisterGenerator();
+        this.entityPhysics.close();
 
         this.provider.close();
         this.provider = null;
         this.blockMetadata = null;
-        this.blockCache.clear();
+        this.chunkCache.clear();
         this.temporalPosition = null;
     }
 
@@ -459,6 +542,7 @@ public class Level implements ChunkManager, Metadatable {
         this.chunkLoaders.get(index).put(hash, loader);
         if (loader instanceof Player) {
             this.playerLoaders.get(index).put(hash, (Player) loader);
+            this.playerVisibility.subscribe((Player) loader, chunkX, chunkZ);
         }
 
         if (!this.loaders.containsKey(hash)) {
@@ -480,7 +564,9 @@ public class Level implements ChunkManager, Metadatable {
         String index = Level.chunkHash(chunkX, chunkZ);
         if (this.chunkLoaders.containsKey(index) && this.chunkLoaders.get(index).containsKey(hash)) {
             this.chunkLoaders.get(index).remove(hash);
-            this.playerLoaders.get(index).remove(hash);
+            if (this.playerLoaders.get(index).remove(hash) != null) {
+                this.playerVisibility.unsubscribe((Player) loader, chunkX, chunkZ);
+            }
             if (this.chunkLoaders.get(index).isEmpty()) {
                 this.chunkLoaders.remove(index);
                 this.playerLoaders.remove(index);
@@ -531,51 +617,78 @@ public class Level implements ChunkManager, Metadatable {
 
         this.unloadChunks();
 
-        while (this.updateQueue.peek() != null && this.updateQueue.peek().priority <= currentTick) {
-            Block block = this.getBlock((Vector3) this.updateQueue.poll().data);
-            this.updateQueueIndex.remove(Level.blockHash((int) block.x, (int) block.y, (int) block.z));
-            block.onUpdate(BLOCK_UPDATE_SCHEDULED);
+        this.lastTickUpdates = 0;
+        long update;
+        while ((update = this.updateQueue.poll(currentTick)) != BlockUpdateScheduler.NONE) {
+            int x = BlockUpdateScheduler.getHashX(update);
+            int y = BlockUpdateScheduler.getHashY(update);
+            int z = BlockUpdateScheduler.getHashZ(update);
+            ++this.lastTickUpdates;
+            this.getBlock(this.temporalVector.setComponents(x, y, z)).onUpdate(BLOCK_UPDATE_SCHEDULED);
         }
 
-        for (long id : new ArrayList<>(this.updateEntities.keySet())) {
-            Entity entity = this.updateEntities.get(id);
+        this.liquidFlow.tick(currentTick);
+
+        this.activationRange.activateEntities(this.loaders.values(), currentTick);
+        this.entityPhysics.prefetch(this.updateEntities.values(), this.activationRange, currentTick);
+        //Entities added by the updates wait for the next tick, removed ones are skipped
+        for (Entity entity : this.updateEntities.values()) {
+            if (!entity.closed && !this.activationRange.shouldUpdate(entity, currentTick)) {
+                continue;
+            }
             if (entity.closed || !entity.onUpdate(currentTick)) {
-                this.updateEntities.remove(id);
+                this.updateEntities.remove(entity.getId());
+            }
+        }
+        this.entityPhysics.release();
+
+        this.processExplosions();
+
+        this.itemMerger.tick(currentTick);
+        this.playerVisibility.tick(currentTick);
+
+        while ((update = this.tileQueue.poll(currentTick)) != BlockUpdateScheduler.NONE) {
+            int x = BlockUpdateScheduler.getHashX(update);
+            int z = BlockUpdateScheduler.getHashZ(update);
+            BaseFullChunk chunk = this.getLoadedChunk(x >> 4, z >> 4);
+            Tile tile = chunk != null ? chunk.getTile(x & 0x0f, BlockUpdateScheduler.getHashY(update), z & 0x0f) : null;
+            if (tile != null && !tile.closed) {
+                this.updateTiles.put(tile.getId(), tile);
             }
         }
 
         if (!this.updateTiles.isEmpty()) {
-            for (long id : new ArrayList<>(this.updateTiles.keySet())) {
-                if (!this.updateTiles.get(id).onUpdate()) {
-                    this.updateTiles.remove(id);
+            for (Tile tile : this.updateTiles.values()) {
+                if (!tile.onUpdate()) {
+                    this.updateTiles.remove(tile.getId());
                 }
             }
         }
 
         this.tickChunks();
 
-        if (!this.changedBlocks.isEmpty()) {
+        if (this.pregenerator != null) {
+            this.pregenerator.tick();
+        }
+
+        this.processLightUpdates();
+
+        if (!this.changedBlocks.isEmpty() || !this.changedLight.isEmpty()) {
             if (!this.players.isEmpty()) {
-                for (String index : new ArrayList<>(this.changedBlocks.keySet())) {
-                    Map<String, Vector3> blocks = this.changedBlocks.get(index);
-                    this.chunkCache.remove(index);
-                    Chunk.Entry chunkEntry = Level.getChunkXZ(index);
-                    int chunkX = chunkEntry.chunkX;
-                    int chunkZ = chunkEntry.chunkZ;
-                    if (blocks.size() > 512) {
-                        FullChunk chunk = this.getChunk(chunkX, chunkZ);
-                        for (Player p : this.getChunkPlayers(chunkX, chunkZ).values()) {
-                            p.onChunkChanged(chunk);
-                        }
-                    } else {
-                        this.sendBlocks(this.getChunkPlayers(chunkX, chunkZ).values().stream().toArray(Player[]::new), blocks.values().stream().toArray(Block[]::new), UpdateBlockPacket.FLAG_ALL);
+                for (Map.Entry<String, ChunkBlockDelta> entry : this.changedBlocks.entrySet()) {
+                    ChunkBlockDelta light = this.changedLight.remove(entry.getKey());
+                    if (light != null) {
+                        entry.getValue().addAll(light);
                     }
+                    this.sendBlockDelta(entry.getKey(), entry.getValue());
+                }
+                for (Map.Entry<String, ChunkBlockDelta> entry : this.changedLight.entrySet()) {
+                    this.sendBlockDelta(entry.getKey(), entry.getValue());
                 }
-            } else {
-                this.chunkCache = new HashMap<>();
             }
 
             this.changedBlocks = new HashMap<>();
+            this.changedLight = new HashMap<>();
         }
 
         this.processChunkRequest();
@@ -584,15 +697,7 @@ public class Level implements ChunkManager, Metadatable {
             this.checkSleep();
         }
 
-        for (String key : this.moveToSend.keySet()) {
-            Chunk.Entry chunkEntry = Level.getChunkXZ(key);
-            int chunkX = chunkEntry.chunkX;
-            int chunkZ = chunkEntry.chunkZ;
-            MoveEntityPacket pk = new MoveEntityPacket();
-            pk.entities = this.moveToSend.get(key).values().stream().toArray(MoveEntityPacket.Entry[]::new);
-            this.addChunkPacket(chunkX, chunkZ, pk);
-        }
-        this.moveToSend = new HashMap<>();
+        this.movementBroadcaster.tick(currentTick);
 
         for (String key : this.motionToSend.keySet()) {
             Chunk.Entry chunkEntry = Level.getChunkXZ(key);
@@ -645,6 +750,36 @@ public class Level implements ChunkManager, Metadatable {
         }
     }
 
+    /**
+     * Sends the current blocks of a delta to the viewers of its chunk, or the whole chunk if that is smaller. Block
+     * updates carry no light, the client relights the positions they name.
+     */
+    private void sendBlockDelta(String index, ChunkBlockDelta delta) {
+        int chunkX = delta.getChunkX();
+        int chunkZ = delta.getChunkZ();
+        Map<Integer, Player> chunkPlayers = this.getChunkPlayers(chunkX, chunkZ);
+        FullChunk chunk;
+        if (chunkPlayers.isEmpty() || (chunk = this.getChunk(chunkX, chunkZ)) == null) {
+            return;
+        }
+
+        if (delta.shouldResendChunk(this.chunkCache.getLastSize(index))) {
+            for (Player p : chunkPlayers.values()) {
+                p.onChunkChanged(chunk);
+            }
+        } else {
+            Server.broadcastPacket(chunkPlayers.values(), delta.encode(chunk, UpdateBlockPacket.FLAG_ALL));
+        }
+    }
+
+    private void addBlockChange(String index, int x, int y, int z) {
+        ChunkBlockDelta delta = this.changedBlocks.get(index);
+        if (delta == null) {
+            this.changedBlocks.put(index, delta = new ChunkBlockDelta(x >> 4, z >> 4));
+        }
+        delta.add(x & 0x0f, y & 0x7f, z & 0x0f);
+    }
+
     public void sendBlockExtraData(int x, int y, int z, int id, int data) {
         this.sendBlockExtraData(x, y, z, id, data, this.getChunkPlayers(x >> 4, z >> 4).values());
     }
@@ -681,6 +816,7 @@ public class Level implements ChunkManager, Metadatable {
 
     public void sendBlocks(Player[] target, Block[] blocks, int flags, boolean optimizeRebuilds) {
         UpdateBlockPacket pk = new UpdateBlockPacket();
+        List<UpdateBlockPacket.Entry> records = new ArrayList<>(blocks.length);
 
         if (optimizeRebuilds) {
             Map<String, Boolean> chunks = new HashMap<>();
@@ -697,10 +833,7 @@ public class Level implements ChunkManager, Metadatable {
                     first = true;
                 }
 
-                List<UpdateBlockPacket.Entry> list = new ArrayList<>();
-                Collections.addAll(list, pk.records);
-                list.add(new UpdateBlockPacket.Entry((int) b.x, (int) b.z, (int) b.y, b.getId(), b.getDamage(), first ? flags : UpdateBlockPacket.FLAG_NONE));
-                pk.records = list.stream().toArray(UpdateBlockPacket.Entry[]::new);
+                records.add(new UpdateBlockPacket.Entry((int) b.x, (int) b.z, (int) b.y, b.getId(), b.getDamage(), first ? flags : UpdateBlockPacket.FLAG_NONE));
             }
         } else {
             for (Block b : blocks) {
@@ -708,13 +841,11 @@ public class Level implements ChunkManager, Metadatable {
                     continue;
                 }
 
-                List<UpdateBlockPacket.Entry> list = new ArrayList<>();
-                Collections.addAll(list, pk.records);
-                list.add(new UpdateBlockPacket.Entry((int) b.x, (int) b.z, (int) b.y, b.getId(), b.getDamage(), flags));
-                pk.records = list.stream().toArray(UpdateBlockPacket.Entry[]::new);
+                records.add(new UpdateBlockPacket.Entry((int) b.x, (int) b.z, (int) b.y, b.getId(), b.getDamage(), flags));
             }
         }
 
+        pk.records = records.stream().toArray(UpdateBlockPacket.Entry[]::new);
         Server.broadcastPacket(target, pk);
     }
 
@@ -724,21 +855,16 @@ public class Level implements ChunkManager, Metadatable {
 
     public void clearCache(boolean full) {
         if (full) {
-            this.chunkCache = new HashMap<>();
-            this.blockCache = new HashMap<>();
-        } else {
-            if (this.chunkCache.size() > 768) {
-                this.chunkCache = new HashMap<>();
-            }
-
-            if (this.blockCache.size() > 2048) {
-                this.blockCache = new HashMap<>();
-            }
+            this.chunkCache.clear();
         }
     }
 
     public void clearChunkCache(int chunkX, int chunkZ) {
-        this.chunkCache.remove(Level.chunkHash(chunkX, chunkZ));
+        this.chunkCache.invalidate(Level.chunkHash(chunkX, chunkZ));
+    }
+
+    public ChunkNetworkCache getChunkCache() {
+        return this.chunkCache;
     }
 
     private void tickChunks() {
@@ -801,18 +927,13 @@ public class Level implements ChunkManager, Metadatable {
                             int z = (k >> 16) & 0x0f;
 
                             blockId = section.getBlockId(x, y, z);
-                            if (this.randomTickBlocks.containsKey(blockId)) {
-                                Class<? extends Block> clazz = this.randomTickBlocks.get(blockId);
-                                try {
-                                    Block block = clazz.getConstructor(int.class).newInstance(section.getBlockData(x, y, z));
-                                    block.x = chunkX * 16 + x;
-                                    block.y = (Y << 4) + y;
-                                    block.z = chunkZ * 16 + z;
-                                    block.level = this;
-                                    block.onUpdate(BLOCK_UPDATE_RANDOM);
-                                } catch (Exception e) {
-                                    throw new RuntimeException(e);
-                                }
+                            if (this.randomTickBlocks[blockId]) {
+                                Block block = this.blockStates[(blockId << 4) | section.getBlockData(x, y, z)].clone();
+                                block.x = chunkX * 16 + x;
+                                block.y = (Y << 4) + y;
+                                block.z = chunkZ * 16 + z;
+                                block.level = this;
+                                block.onUpdate(BLOCK_UPDATE_RANDOM);
                             }
                         }
                     }
@@ -827,15 +948,8 @@ public class Level implements ChunkManager, Metadatable {
                         int z = (k >> 16) & 0x0f;
 
                         blockTest |= blockId = chunk.getBlockId(x, y + (Y << 4), z);
-                        if (this.randomTickBlocks.containsKey(blockId)) {
-                            Class<? extends Block> clazz = this.randomTickBlocks.get(blockId);
-
-                            Block block;
-                            try {
-                                block = clazz.getConstructor(int.class).newInstance(chunk.getBlockData(x, y + (Y << 4), z));
-                            } catch (Exception e) {
-                                throw new RuntimeException(e);
-                            }
+                        if (this.randomTickBlocks[blockId]) {
+                            Block block = this.blockStates[(blockId << 4) | chunk.getBlockData(x, y + (Y << 4), z)].clone();
                             block.x = chunkX * 16 + x;
                             block.y = (Y << 4) + y;
                             block.z = chunkZ * 16 + z;
@@ -888,45 +1002,83 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public void updateAround(Vector3 pos) {
-        BlockUpdateEvent ev;
-        this.server.getPluginManager().callEvent(ev = new BlockUpdateEvent(this.getBlock(this.temporalVector.setComponents(pos.x, pos.y - 1, pos.z))));
-        if (!ev.isCancelled()) {
-            ev.getBlock().onUpdate(BLOCK_UPDATE_NORMAL);
-        }
-
-        this.server.getPluginManager().callEvent(ev = new BlockUpdateEvent(this.getBlock(this.temporalVector.setComponents(pos.x, pos.y + 1, pos.z))));
-        if (!ev.isCancelled()) {
-            ev.getBlock().onUpdate(BLOCK_UPDATE_NORMAL);
+        int x = (int) pos.x;
+        int y = (int) pos.y;
+        int z = (int) pos.z;
+        this.updateBlock(x, y - 1, z);
+        this.updateBlock(x, y + 1, z);
+        this.updateBlock(x - 1, y, z);
+        this.updateBlock(x + 1, y, z);
+        this.updateBlock(x, y, z - 1);
+        this.updateBlock(x, y, z + 1);
+    }
+
+    private void updateBlock(int x, int y, int z) {
+        //Nothing can observe the update of a block without an update handler when no plugin listens for it
+        if (!Block.hasUpdateHandler[this.getBlockState(x, y, z).getId()] && BlockUpdateEvent.getHandlers().getRegisteredListeners().length == 0) {
+            return;
         }
 
-        this.server.getPluginManager().callEvent(ev = new BlockUpdateEvent(this.getBlock(this.temporalVector.setComponents(pos.x - 1, pos.y, pos.z))));
+        BlockUpdateEvent ev;
+        this.server.getPluginManager().callEvent(ev = new BlockUpdateEvent(this.getBlock(this.temporalVector.setComponents(x, y, z))));
         if (!ev.isCancelled()) {
             ev.getBlock().onUpdate(BLOCK_UPDATE_NORMAL);
         }
+    }
 
-        this.server.getPluginManager().callEvent(ev = new BlockUpdateEvent(this.getBlock(this.temporalVector.setComponents(pos.x + 1, pos.y, pos.z))));
-        if (!ev.isCancelled()) {
-            ev.getBlock().onUpdate(BLOCK_UPDATE_NORMAL);
-        }
+    /**
+     * Queues an explosion. At most chunk-ticking.explosions-per-tick explosions go off per tick, the rest wait for
+     * the next ticks, so chain reactions are spread out instead of stalling a single tick.
+     */
+    public void addExplosion(Explosion explosion) {
+        this.explosionQueue.add(explosion);
+    }
 
-        this.server.getPluginManager().callEvent(ev = new BlockUpdateEvent(this.getBlock(this.temporalVector.setComponents(pos.x, pos.y, pos.z - 1))));
-        if (!ev.isCancelled()) {
-            ev.getBlock().onUpdate(BLOCK_UPDATE_NORMAL);
-        }
+    public int getQueuedExplosionCount() {
+        return this.explosionQueue.size();
+    }
 
-        this.server.getPluginManager().callEvent(ev = new BlockUpdateEvent(this.getBlock(this.temporalVector.setComponents(pos.x, pos.y, pos.z + 1))));
-        if (!ev.isCancelled()) {
-            ev.getBlock().onUpdate(BLOCK_UPDATE_NORMAL);
+    private void processExplosions() {
+        for (int i = 0; i < this.explosionsPerTick && !this.explosionQueue.isEmpty(); ++i) {
+            Explosion explosion = this.explosionQueue.poll();
+            if (explosion.isBlockBreaking()) {
+                explosion.explodeA();
+            }
+            explosion.explodeB();
         }
     }
 
     public void scheduleUpdate(Vector3 pos, int delay) {
-        String index = Level.blockHash((int) pos.x, (int) pos.y, (int) pos.z);
-        if (this.updateQueueIndex.containsKey(index) && this.updateQueueIndex.get(index) <= delay) {
-            return;
-        }
-        this.updateQueueIndex.put(index, delay);
-        this.updateQueue.add(new PriorityObject(new Vector3((int) pos.x, (int) pos.y, (int) pos.z), delay + this.server.getTick()));
+        this.updateQueue.schedule((int) pos.x, (int) pos.y, (int) pos.z, this.server.getTick() + delay);
+    }
+
+    /**
+     * Wakes a tile up after the given number of ticks: it is updated every tick from then on, until its update
+     * returns false. Scheduling a tile that is already due earlier does nothing.
+     */
+    public void scheduleTileUpdate(Tile tile, int delay) {
+        this.tileQueue.schedule(tile.x, tile.y, tile.z, this.server.getTick() + delay);
+    }
+
+    /**
+     * Number of sleeping tiles waiting to wake up.
+     */
+    public int getScheduledTileCount() {
+        return this.tileQueue.size();
+    }
+
+    /**
+     * Number of scheduled block updates waiting to run.
+     */
+    public int getScheduledUpdateCount() {
+        return this.updateQueue.size();
+    }
+
+    /**
+     * Number of scheduled block updates run in the last tick.
+     */
+    public int getLastTickScheduledUpdates() {
+        return this.lastTickUpdates;
     }
 
     public Block[] getCollisionBlocks(AxisAlignedBB bb) {
@@ -987,33 +1139,111 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public AxisAlignedBB[] getCollisionCubes(Entity entity, AxisAlignedBB bb, boolean entities) {
+        return this.getCollisionCubes(entity, bb, entities, new CollisionBuffer()).toArray();
+    }
+
+    /**
+     * Appends the boxes of the blocks, and optionally of the entities, that collide with a box to a buffer. Block
+     * states are read straight from the chunks and tested against their shared boxes, so nothing is allocated once
+     * the buffer has grown.
+     */
+    public CollisionBuffer getCollisionCubes(Entity entity, AxisAlignedBB bb, boolean entities, CollisionBuffer buffer) {
         int minX = NukkitMath.floorDouble(bb.minX);
-        int minY = NukkitMath.floorDouble(bb.minY);
+        int minY = Math.max(0, NukkitMath.floorDouble(bb.minY));
         int minZ = NukkitMath.floorDouble(bb.minZ);
         int maxX = NukkitMath.ceilDouble(bb.maxX);
-        int maxY = NukkitMath.ceilDouble(bb.maxY);
+        int maxY = Math.min(127, NukkitMath.ceilDouble(bb.maxY));
         int maxZ = NukkitMath.ceilDouble(bb.maxZ);
 
-        List<AxisAlignedBB> collides = new ArrayList<>();
-
         for (int z = minZ; z <= maxZ; ++z) {
+            FullChunk chunk = null;
             for (int x = minX; x <= maxX; ++x) {
+                if (chunk == null || (x & 0x0f) == 0) {
+                    chunk = this.getChunk(x >> 4, z >> 4, false);
+                    if (chunk == null) {
+                        continue;
+                    }
+                }
+
                 for (int y = minY; y <= maxY; ++y) {
-                    Block block = this.getBlock(this.temporalVector.setComponents(x, y, z));
-                    if (!block.canPassThrough() && block.collidesWithBB(bb)) {
-                        collides.add(block.getBoundingBox());
+                    int fullId = chunk.getFullBlock(x & 0x0f, y, z & 0x0f);
+                    if (Block.passThrough[fullId]) {
+                        continue;
+                    }
+
+                    if (Block.dynamicBoundingBox[fullId >> 4]) {
+                        Block block = this.getBlock(this.temporalVector.setComponents(x, y, z));
+                        if (!block.canPassThrough() && block.collidesWithBB(bb)) {
+                            buffer.add(block.getBoundingBox());
+                        }
+                        continue;
+                    }
+
+                    AxisAlignedBB shape = Block.boundingBoxes[fullId];
+                    if (shape != null
+                            && bb.maxX > x + shape.minX && bb.minX < x + shape.maxX
+                            && bb.maxY > y + shape.minY && bb.minY < y + shape.maxY
+                            && bb.maxZ > z + shape.minZ && bb.minZ < z + shape.maxZ) {
+                        buffer.add(x + shape.minX, y + shape.minY, z + shape.minZ, x + shape.maxX, y + shape.maxY, z + shape.maxZ);
                     }
                 }
             }
         }
 
         if (entities) {
-            for (Entity ent : this.getCollidingEntities(bb.grow(0.25f, 0.25f, 0.25f), entity)) {
-                collides.add(ent.boundingBox.clone());
+            this.forEachCollidingEntity(bb.grow(0.25f, 0.25f, 0.25f), entity, buffer);
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Whether any non-air block box intersects a box. Same test as {@link #getCollisionBlocks(AxisAlignedBB)}, without
+     * building the blocks.
+     */
+    public boolean hasCollisionBlocks(AxisAlignedBB bb) {
+        int minX = NukkitMath.floorDouble(bb.minX);
+        int minY = Math.max(0, NukkitMath.floorDouble(bb.minY));
+        int minZ = NukkitMath.floorDouble(bb.minZ);
+        int maxX = NukkitMath.ceilDouble(bb.maxX);
+        int maxY = Math.min(127, NukkitMath.ceilDouble(bb.maxY));
+        int maxZ = NukkitMath.ceilDouble(bb.maxZ);
+
+        for (int z = minZ; z <= maxZ; ++z) {
+            FullChunk chunk = null;
+            for (int x = minX; x <= maxX; ++x) {
+                if (chunk == null || (x & 0x0f) == 0) {
+                    chunk = this.getChunk(x >> 4, z >> 4, false);
+                    if (chunk == null) {
+                        continue;
+                    }
+                }
+
+                for (int y = minY; y <= maxY; ++y) {
+                    int fullId = chunk.getFullBlock(x & 0x0f, y, z & 0x0f);
+                    if (fullId >> 4 == 0) {
+                        continue;
+                    }
+
+                    if (Block.dynamicBoundingBox[fullId >> 4]) {
+                        if (this.getBlock(this.temporalVector.setComponents(x, y, z)).collidesWithBB(bb)) {
+                            return true;
+                        }
+                        continue;
+                    }
+
+                    AxisAlignedBB shape = Block.boundingBoxes[fullId];
+                    if (shape != null
+                            && bb.maxX > x + shape.minX && bb.minX < x + shape.maxX
+                            && bb.maxY > y + shape.minY && bb.minY < y + shape.maxY
+                            && bb.maxZ > z + shape.minZ && bb.minZ < z + shape.maxZ) {
+                        return true;
+                    }
+                }
             }
         }
 
-        return collides.stream().toArray(AxisAlignedBB[]::new);
+        return false;
     }
 
     public int getFullLight(Vector3 pos) {
@@ -1039,124 +1269,279 @@ public class Level implements ChunkManager, Metadatable {
         return this.getBlock(pos, true);
     }
 
+    /**
+     * A new block of the state at the given position, placed there. The cached parameter is kept for compatibility,
+     * blocks are no longer cached by position.
+     */
     public Block getBlock(Vector3 pos, boolean cached) {
-        String chunkIndex = Level.chunkHash((int) pos.x >> 4, (int) pos.z >> 4);
-        String index = Level.blockHash((int) pos.x, (int) pos.y, (int) pos.z);
-        int fullState = 0;
-        if (cached && this.blockCache.containsKey(index)) {
-            return this.blockCache.get(index);
-        } else if (pos.y >= 0 && pos.y < 128 && this.chunks.containsKey(chunkIndex)) {
-            fullState = this.chunks.get(chunkIndex).getFullBlock((int) pos.x & 0x0f, (int) pos.y & 0x7f, (int) pos.z & 0x0f);
-        } else {
-            fullState = 0;
-        }
-
-        Block block = this.blockStates[fullState & 0xfff].clone();
+        Block block = this.getBlockState((int) pos.x, (int) pos.y, (int) pos.z).clone();
 
         block.x = pos.x;
         block.y = pos.y;
         block.z = pos.z;
         block.level = this;
 
-        this.blockCache.put(index, block);
-
         return block;
     }
 
+    public EntityPhysics getEntityPhysics() {
+        return this.entityPhysics;
+    }
+
+    public PlayerVisibility getPlayerVisibility() {
+        return this.playerVisibility;
+    }
+
+    public MovementBroadcaster getMovementBroadcaster() {
+        return this.movementBroadcaster;
+    }
+
+    public ActivationRange getActivationRange() {
+        return this.activationRange;
+    }
+
+    public ItemMerger getItemMerger() {
+        return this.itemMerger;
+    }
+
+    public LiquidFlow getLiquidFlow() {
+        return this.liquidFlow;
+    }
+
+    public Block getBlockState(Vector3 pos) {
+        return this.getBlockState((int) pos.x, (int) pos.y, (int) pos.z);
+    }
+
+    /**
+     * The shared block of the state at the given position. Air for unloaded chunks and positions outside the world.
+     * Lookups in the chunk of the previous lookup do not allocate.
+     * <p>
+     * The returned block is the registry template of the state: it has no position or level, and must not be
+     * modified. Only use it for properties of the state, such as its id, meta, light or hardness.
+     */
+    public Block getBlockState(int x, int y, int z) {
+        if (y < 0 || y >= 128) {
+            return this.blockStates[0];
+        }
+
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        LastChunk last = this.lastChunk;
+        BaseFullChunk chunk;
+        if (last != null && last.chunkX == chunkX && last.chunkZ == chunkZ) {
+            chunk = last.chunk;
+        } else {
+            chunk = this.getLoadedChunk(chunkX, chunkZ);
+            if (chunk == null) {
+                return this.blockStates[0];
+            }
+            this.lastChunk = new LastChunk(chunkX, chunkZ, chunk);
+        }
+        return this.blockStates[chunk.getFullBlock(x & 0x0f, y & 0x7f, z & 0x0f) & 0xfff];
+    }
+
+    //Immutable, so workers reading blocks during the entity physics stage see a consistent entry
+    private static class LastChunk {
+        private final int chunkX;
+        private final int chunkZ;
+        private final BaseFullChunk chunk;
+
+        private LastChunk(int chunkX, int chunkZ, BaseFullChunk chunk) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.chunk = chunk;
+        }
+    }
+
+    /**
+     * Queues a block light and sky light update. Updates are deduplicated per chunk section and processed together
+     * at the end of the tick.
+     */
     public void updateAllLight(Vector3 pos) {
-        this.updateBlockSkyLight((int) pos.x, (int) pos.y, (int) pos.z);
-        this.updateBlockLight((int) pos.x, (int) pos.y, (int) pos.z);
+        this.queueLightUpdate((int) pos.x, (int) pos.y, (int) pos.z);
     }
 
+    /**
+     * Queues a light update like {@link #updateAllLight}, which also updates the block light of the position.
+     */
     public void updateBlockSkyLight(int x, int y, int z) {
-        //todo
+        this.queueLightUpdate(x, y, z);
     }
 
+    /**
+     * Queues a light update like {@link #updateAllLight}, which also updates the sky light of the position.
+     */
     public void updateBlockLight(int x, int y, int z) {
-        Queue<Vector3> lightPropagationQueue = new ConcurrentLinkedQueue<>();
-        Queue<Object[]> lightRemovalQueue = new ConcurrentLinkedQueue<>();
-        Map<String, Boolean> visited = new HashMap<>();
-        Map<String, Boolean> removalVisited = new HashMap<>();
+        this.queueLightUpdate(x, y, z);
+    }
 
-        int oldLevel = this.getBlockLightAt(x, y, z);
-        int newLevel = Block.light[this.getBlockIdAt(x, y, z)];
+    private void queueLightUpdate(int x, int y, int z) {
+        if (y < 0 || y >= 128) {
+            return;
+        }
 
-        if (oldLevel != newLevel) {
-            this.setBlockLightAt(x, y, z, newLevel);
+        String index = Level.chunkHash(x >> 4, z >> 4);
+        ChunkBlockDelta delta = this.lightUpdates.get(index);
+        if (delta == null) {
+            this.lightUpdates.put(index, delta = new ChunkBlockDelta(x >> 4, z >> 4));
+        }
+        delta.add(x & 0x0f, y, z & 0x0f);
+    }
 
-            if (newLevel < oldLevel) {
-                removalVisited.put(Level.blockHash(x, y, z), true);
-                lightRemovalQueue.add(new Object[]{new Vector3(x, y, z), oldLevel});
-            } else {
-                visited.put(Level.blockHash(x, y, z), true);
-                lightPropagationQueue.add(new Vector3(x, y, z));
-            }
+    /**
+     * Propagates the light changes queued since the last tick and queues the changed positions to be sent with the
+     * block changes. Large batches go to a worker if async light updates are enabled; nothing is processed while a
+     * worker batch is in flight, so its results never overwrite newer light.
+     */
+    public void processLightUpdates() {
+        if (this.lightUpdateTask != null) {
+            return;
         }
 
-        while (!lightRemovalQueue.isEmpty()) {
-            Object[] val = lightRemovalQueue.poll();
-            Vector3 node = (Vector3) val[0];
-            int lightLevel = (int) val[1];
+        if (!this.lightUpdates.isEmpty()) {
+            int count = 0;
+            for (ChunkBlockDelta delta : this.lightUpdates.values()) {
+                count += delta.size();
+            }
+
+            if (this.asyncLightUpdates && count >= this.asyncLightThreshold && !this.lightEngine.hasPendingUpdates()) {
+                this.lightUpdateTask = new LightUpdateTask(this, this.lightUpdates);
+                this.lightUpdates = new HashMap<>();
+                this.server.getScheduler().scheduleAsyncTask(this.lightUpdateTask);
+                return;
+            }
+
+            for (ChunkBlockDelta delta : this.lightUpdates.values()) {
+                this.lightEngine.queueUpdates(delta);
+            }
+            this.lightUpdates = new HashMap<>();
+        }
 
-            this.computeRemoveBlockLight((int) node.x - 1, (int) node.y, (int) node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight((int) node.x + 1, (int) node.y, (int) node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight((int) node.x, (int) node.y - 1, (int) node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight((int) node.x, (int) node.y + 1, (int) node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight((int) node.x, (int) node.y, (int) node.z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight((int) node.x, (int) node.y, (int) node.z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+        if (this.lightEngine.hasPendingUpdates()) {
+            this.lightEngine.processUpdates();
+            this.addLightChanges(this.lightEngine.pollChanges());
         }
+    }
 
-        while (!lightPropagationQueue.isEmpty()) {
-            Vector3 node = lightPropagationQueue.poll();
-            int lightLevel = this.getBlockLightAt((int) node.x, (int) node.y, (int) node.z) - Block.lightFilter[this.getBlockIdAt((int) node.x, (int) node.y, (int) node.z)];
+    public void lightUpdateCallback(LightUpdateTask task) {
+        if (task != this.lightUpdateTask) {
+            return;
+        }
+        this.lightUpdateTask = null;
 
-            if (lightLevel >= 1) {
-                this.computeSpreadBlockLight((int) node.x - 1, (int) node.y, (int) node.z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight((int) node.x + 1, (int) node.y, (int) node.z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight((int) node.x, (int) node.y - 1, (int) node.z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight((int) node.x, (int) node.y + 1, (int) node.z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight((int) node.x, (int) node.y, (int) node.z - 1, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight((int) node.x, (int) node.y, (int) node.z + 1, lightLevel, lightPropagationQueue, visited);
+        Map<String, ChunkBlockDelta> changes = task.getChanges();
+        if (changes == null) {
+            for (ChunkBlockDelta delta : task.getUpdates().values()) {
+                this.lightEngine.queueUpdates(delta);
             }
+            return;
         }
-    }
 
-    private void computeRemoveBlockLight(int x, int y, int z, int currentLight, Queue<Object[]> queue, Queue<Vector3> spreadQueue, Map<String, Boolean> visited, Map<String, Boolean> spreadVisited) {
-        int current = this.getBlockLightAt(x, y, z);
-        String index = Level.blockHash(x, y, z);
-        if (current != 0 && current < currentLight) {
-            this.setBlockLightAt(x, y, z, 0);
+        for (Map.Entry<String, ChunkBlockDelta> entry : changes.entrySet()) {
+            ChunkBlockDelta delta = entry.getValue();
+            FullChunk chunk = this.getChunk(delta.getChunkX(), delta.getChunkZ());
+            //The chunk was unloaded or replaced while the worker ran
+            if (chunk == null || chunk != task.getChunk(entry.getKey())) {
+                continue;
+            }
 
-            if (!visited.containsKey(index)) {
-                visited.put(index, true);
-                if (current > 1) {
-                    queue.add(new Object[]{new Vector3(x, y, z), current});
-                }
+            FullChunk snapshot = task.getSnapshot(entry.getKey());
+            for (int index : delta.getIndices()) {
+                int x = index & 0x0f;
+                int y = index >> 8;
+                int z = (index >> 4) & 0x0f;
+                chunk.setBlockSkyLight(x, y, z, snapshot.getBlockSkyLight(x, y, z));
+                chunk.setBlockLight(x, y, z, snapshot.getBlockLight(x, y, z));
             }
-        } else if (current >= currentLight) {
-            if (!spreadVisited.containsKey(index)) {
-                spreadVisited.put(index, true);
-                spreadQueue.add(new Vector3(x, y, z));
+        }
+
+        this.addLightChanges(changes);
+    }
+
+    /**
+     * Invalidates the cached payloads of the chunks whose light changed, and queues the changed positions to be sent
+     * with the block changes of the tick.
+     */
+    private void addLightChanges(Map<String, ChunkBlockDelta> changes) {
+        for (Map.Entry<String, ChunkBlockDelta> entry : changes.entrySet()) {
+            this.chunkCache.invalidate(entry.getKey());
+            if (!this.players.isEmpty()) {
+                this.mergeDelta(this.changedLight, entry.getKey(), entry.getValue());
             }
         }
     }
 
-    private void computeSpreadBlockLight(int x, int y, int z, int currentLight, Queue<Vector3> queue, Map<String, Boolean> visited) {
-        int current = this.getBlockLightAt(x, y, z);
-        String index = Level.blockHash(x, y, z);
+    /**
+     * Sets every position of the given deltas to air in one pass. The chunks are written directly, the changes are
+     * sent with the batched block changes of the tick and queued for light updates, and only the blocks around the
+     * cleared positions get a block update.
+     */
+    public void clearBlocks(Collection<ChunkBlockDelta> deltas) {
+        for (ChunkBlockDelta delta : deltas) {
+            int chunkX = delta.getChunkX();
+            int chunkZ = delta.getChunkZ();
+            BaseFullChunk chunk = this.getLoadedChunk(chunkX, chunkZ);
+            if (chunk == null || delta.isEmpty()) {
+                continue;
+            }
 
-        if (current < currentLight) {
-            this.setBlockLightAt(x, y, z, currentLight);
+            ChunkLoader[] loaders = this.getChunkLoaders(chunkX, chunkZ);
+            for (int index : delta.getIndices()) {
+                int x = index & 0x0f;
+                int y = index >> 8;
+                int z = (index >> 4) & 0x0f;
+                chunk.setBlock(x, y, z, 0, 0);
+                if (loaders.length > 0) {
+                    Vector3 v = new Vector3((chunkX << 4) | x, y, (chunkZ << 4) | z);
+                    for (ChunkLoader loader : loaders) {
+                        loader.onBlockChanged(v);
+                    }
+                }
+            }
 
-            if (!visited.containsKey(index)) {
-                visited.put(index, true);
-                if (currentLight > 1) {
-                    queue.add(new Vector3(x, y, z));
+            String index = Level.chunkHash(chunkX, chunkZ);
+            this.chunkCache.invalidate(index);
+            this.mergeDelta(this.changedBlocks, index, delta);
+            this.mergeDelta(this.lightUpdates, index, delta);
+        }
+
+        for (ChunkBlockDelta delta : deltas) {
+            int baseX = delta.getChunkX() << 4;
+            int baseZ = delta.getChunkZ() << 4;
+            for (int index : delta.getIndices()) {
+                int x = index & 0x0f;
+                int y = index >> 8;
+                int z = (index >> 4) & 0x0f;
+                if (y == 0 || !delta.contains(x, y - 1, z)) {
+                    this.updateBlock(baseX | x, y - 1, baseZ | z);
+                }
+                if (y == 127 || !delta.contains(x, y + 1, z)) {
+                    this.updateBlock(baseX | x, y + 1, baseZ | z);
+                }
+                if (x == 0 || !delta.contains(x - 1, y, z)) {
+                    this.updateBlock((baseX | x) - 1, y, baseZ | z);
+                }
+                if (x == 15 || !delta.contains(x + 1, y, z)) {
+                    this.updateBlock((baseX | x) + 1, y, baseZ | z);
+                }
+                if (z == 0 || !delta.contains(x, y, z - 1)) {
+                    this.updateBlock(baseX | x, y, (baseZ | z) - 1);
+                }
+                if (z == 15 || !delta.contains(x, y, z + 1)) {
+                    this.updateBlock(baseX | x, y, (baseZ | z) + 1);
                 }
             }
         }
     }
 
+    private void mergeDelta(Map<String, ChunkBlockDelta> deltas, String index, ChunkBlockDelta delta) {
+        ChunkBlockDelta current = deltas.get(index);
+        if (current == null) {
+            deltas.put(index, current = new ChunkBlockDelta(delta.getChunkX(), delta.getChunkZ()));
+        }
+        current.addAll(delta);
+    }
+
     public boolean setBlock(Vector3 pos, Block block) {
         return this.setBlock(pos, block, false, true);
     }
@@ -1179,19 +1564,14 @@ public class Level implements ChunkManager, Metadatable {
             }
 
             block.position(position);
-            this.blockCache.remove(Level.blockHash((int) pos.x, (int) pos.y, (int) pos.z));
 
             String index = Level.chunkHash((int) pos.x >> 4, (int) pos.z >> 4);
+            this.chunkCache.invalidate(index);
 
             if (direct) {
                 this.sendBlocks(this.getChunkPlayers((int) pos.x >> 4, (int) pos.z >> 4).values().stream().toArray(Player[]::new), new Block[]{block}, UpdateBlockPacket.FLAG_PRIORITY);
-                this.chunkCache.remove(index);
             } else {
-                if (!this.changedBlocks.containsKey(index)) {
-                    this.changedBlocks.put(index, new HashMap<>());
-                }
-
-                this.changedBlocks.get(index).put(Level.blockHash((int) block.x, (int) block.y, (int) block.z), block.clone());
+                this.addBlockChange(index, (int) pos.x, (int) pos.y, (int) pos.z);
             }
 
             for (ChunkLoader loader : this.getChunkLoaders((int) pos.x >> 4, (int) pos.z >> 4)) {
@@ -1204,9 +1584,7 @@ public class Level implements ChunkManager, Metadatable {
                 BlockUpdateEvent ev = new BlockUpdateEvent(block);
                 this.server.getPluginManager().callEvent(ev);
                 if (!ev.isCancelled()) {
-                    for (Entity entity : this.getNearbyEntities(new AxisAlignedBB(block.x - 1, block.y - 1, block.z - 1, block.x + 1, block.y + 1, block.z + 1))) {
-                        entity.scheduleUpdate();
-                    }
+                    this.forEachNearbyEntity(getBlockChangeBox(block), null, NEARBY_BLOCK_CHANGE);
                     ev.getBlock().onUpdate(BLOCK_UPDATE_NORMAL);
                 }
 
@@ -1219,6 +1597,17 @@ public class Level implements ChunkManager, Metadatable {
         return false;
     }
 
+    /**
+     * Box of the entities notified of a change of a block: the block and the blocks around it. Box intersections are
+     * strict, so entities standing on the block, at its top face, need the block above inside the box.
+     */
+    static AxisAlignedBB getBlockChangeBox(Vector3 block) {
+        int x = NukkitMath.floorDouble(block.x);
+        int y = NukkitMath.floorDouble(block.y);
+        int z = NukkitMath.floorDouble(block.z);
+        return new AxisAlignedBB(x - 1, y - 1, z - 1, x + 2, y + 2, z + 2);
+    }
+
     public void dropItem(Vector3 source, Item item) {
         this.dropItem(source, item, null);
     }
@@ -1553,7 +1942,7 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public Entity getEntity(long entityId) {
-        return this.entities.containsKey(entityId) ? this.entities.get(entityId) : null;
+        return this.entities.get(entityId);
     }
 
     public Entity[] getEntities() {
@@ -1565,26 +1954,25 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public Entity[] getCollidingEntities(AxisAlignedBB bb, Entity entity) {
-        List<Entity> nearby = new ArrayList<>();
-
-        if (entity == null || entity.canCollide) {
-            int minX = NukkitMath.floorDouble((bb.minX - 2) / 16);
-            int maxX = NukkitMath.ceilDouble((bb.maxX + 2) / 16);
-            int minZ = NukkitMath.floorDouble((bb.minZ - 2) / 16);
-            int maxZ = NukkitMath.ceilDouble((bb.maxZ + 2) / 16);
+        EntityCollector collector = EntityCollector.get();
+        this.forEachCollidingEntity(bb, entity, collector);
+        return collector.drain();
+    }
 
-            for (int x = minX; x <= maxX; ++x) {
-                for (int z = minZ; z <= maxZ; ++z) {
-                    for (Entity ent : this.getChunkEntities(x, z).values()) {
-                        if ((entity == null || (!ent.equals(entity) && entity.canCollideWith(ent))) && ent.boundingBox.intersectsWith(bb)) {
-                            nearby.add(ent);
-                        }
-                    }
-                }
+    /**
+     * Visits the entities intersecting a box that the given entity can collide with.
+     */
+    public void forEachCollidingEntity(AxisAlignedBB bb, Entity entity, EntityVisitor visitor) {
+        if (entity == null) {
+            this.entityIndex.forEachIntersecting(bb, visitor);
+        } else if (entity.canCollide) {
+            EntityFilter filter = EntityFilter.get(entity, true, visitor);
+            try {
+                this.entityIndex.forEachIntersecting(bb, filter);
+            } finally {
+                filter.clear();
             }
         }
-
-        return nearby.stream().toArray(Entity[]::new);
     }
 
     public Entity[] getNearbyEntities(AxisAlignedBB bb) {
@@ -1592,26 +1980,92 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public Entity[] getNearbyEntities(AxisAlignedBB bb, Entity entity) {
-        List<Entity> nearby = new ArrayList<>();
+        EntityCollector collector = EntityCollector.get();
+        this.forEachNearbyEntity(bb, entity, collector);
+        return collector.drain();
+    }
 
-        if (entity == null || entity.canCollide) {
-            int minX = NukkitMath.floorDouble((bb.minX - 2) / 16);
-            int maxX = NukkitMath.ceilDouble((bb.maxX + 2) / 16);
-            int minZ = NukkitMath.floorDouble((bb.minZ - 2) / 16);
-            int maxZ = NukkitMath.ceilDouble((bb.maxZ + 2) / 16);
+    /**
+     * Visits the entities intersecting a box, except the given entity.
+     */
+    public void forEachNearbyEntity(AxisAlignedBB bb, Entity entity, EntityVisitor visitor) {
+        if (entity == null) {
+            this.entityIndex.forEachIntersecting(bb, visitor);
+        } else if (entity.canCollide) {
+            EntityFilter filter = EntityFilter.get(entity, false, visitor);
+            try {
+                this.entityIndex.forEachIntersecting(bb, filter);
+            } finally {
+                filter.clear();
+            }
+        }
+    }
 
-            for (int x = minX; x <= maxX; ++x) {
-                for (int z = minZ; z <= maxZ; ++z) {
-                    for (Entity ent : this.getChunkEntities(x, z).values()) {
-                        if (!Objects.equals(ent, entity) && ent.boundingBox.intersectsWith(bb)) {
-                            nearby.add(ent);
-                        }
-                    }
-                }
+    /**
+     * Per-thread visitor that skips an entity, and optionally the entities it cannot collide with, before passing the
+     * others on.
+     */
+    private static class EntityFilter implements EntityVisitor {
+
+        private static final ThreadLocal<EntityFilter> filters = ThreadLocal.withInitial(EntityFilter::new);
+
+        private Entity entity;
+        private boolean colliding;
+        private EntityVisitor visitor;
+
+        private static EntityFilter get(Entity entity, boolean colliding, EntityVisitor visitor) {
+            EntityFilter filter = filters.get();
+            if (filter.visitor != null) {
+                //Query started by the visitor of another one
+                filter = new EntityFilter();
             }
+            filter.entity = entity;
+            filter.colliding = colliding;
+            filter.visitor = visitor;
+            return filter;
         }
 
-        return nearby.stream().toArray(Entity[]::new);
+        private void clear() {
+            this.entity = null;
+            this.visitor = null;
+        }
+
+        @Override
+        public boolean visit(Entity ent) {
+            return ent == this.entity || (this.colliding && !this.entity.canCollideWith(ent)) || this.visitor.visit(ent);
+        }
+    }
+
+    /**
+     * Per-thread list of the entities found by a query.
+     */
+    private static class EntityCollector implements EntityVisitor {
+
+        private static final ThreadLocal<EntityCollector> collectors = ThreadLocal.withInitial(EntityCollector::new);
+
+        private final List<Entity> entities = new ArrayList<>();
+
+        private static EntityCollector get() {
+            EntityCollector collector = collectors.get();
+            collector.entities.clear();
+            return collector;
+        }
+
+        @Override
+        public boolean visit(Entity entity) {
+            this.entities.add(entity);
+            return true;
+        }
+
+        private Entity[] drain() {
+            Entity[] entities = this.entities.toArray(new Entity[this.entities.size()]);
+            this.entities.clear();
+            return entities;
+        }
+    }
+
+    public void updateEntityIndex(Entity entity) {
+        this.entityIndex.update(entity);
     }
 
     public Map<Long, Tile> getTiles() {
@@ -1619,7 +2073,7 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public Tile getTileById(long tileId) {
-        return this.tiles.containsKey(tileId) ? this.tiles.get(tileId) : null;
+        return this.tiles.get(tileId);
     }
 
     public Map<Long, Player> getPlayers() {
@@ -1657,15 +2111,12 @@ public class Level implements ChunkManager, Metadatable {
 
     @Override
     public void setBlockIdAt(int x, int y, int z, int id) {
-        this.blockCache.remove(Level.blockHash(x, y, z));
         this.getChunk(x >> 4, z >> 4, true).setBlockId(x & 0x0f, y & 0x7f, z & 0x0f, id & 0xff);
 
         String index = Level.chunkHash(x >> 4, z >> 4);
-        if (!this.changedBlocks.containsKey(index)) {
-            this.changedBlocks.put(index, new HashMap<>());
-        }
-        Vector3 v;
-        this.changedBlocks.get(index).put(Level.blockHash(x, y, z), v = new Vector3(x, y, z));
+        this.chunkCache.invalidate(index);
+        this.addBlockChange(index, x, y, z);
+        Vector3 v = new Vector3(x, y, z);
         for (ChunkLoader loader : this.getChunkLoaders(x >> 4, z >> 4)) {
             loader.onBlockChanged(v);
         }
@@ -1688,15 +2139,12 @@ public class Level implements ChunkManager, Metadatable {
 
     @Override
     public void setBlockDataAt(int x, int y, int z, int data) {
-        this.blockCache.remove(Level.blockHash(x, y, z));
         this.getChunk(x >> 4, z >> 4, true).setBlockData(x & 0x0f, y & 0x7f, z & 0x0f, data & 0x0f);
 
         String index = Level.chunkHash(x >> 4, z >> 4);
-        if (!this.changedBlocks.containsKey(index)) {
-            this.changedBlocks.put(index, new HashMap<>());
-        }
-        Vector3 v;
-        this.changedBlocks.get(index).put(Level.blockHash(x, y, z), v = new Vector3(x, y, z));
+        this.chunkCache.invalidate(index);
+        this.addBlockChange(index, x, y, z);
+        Vector3 v = new Vector3(x, y, z);
         for (ChunkLoader loader : this.getChunkLoaders(x >> 4, z >> 4)) {
             loader.onBlockChanged(v);
         }
@@ -1814,6 +2262,10 @@ public class Level implements ChunkManager, Metadatable {
 
             this.provider.setChunk(chunkX, chunkZ, chunk);
             this.chunks.put(index, chunk);
+            this.lastChunk = null;
+            if (oldChunk instanceof BaseFullChunk && oldChunk != chunk) {
+                ((BaseFullChunk) oldChunk).invalidateBlocks();
+            }
         } else {
             Map<Long, Entity> oldEntities = oldChunk != null ? oldChunk.getEntities() : new HashMap<>();
 
@@ -1821,6 +2273,10 @@ public class Level implements ChunkManager, Metadatable {
 
             this.provider.setChunk(chunkX, chunkZ, chunk);
             this.chunks.put(index, chunk);
+            this.lastChunk = null;
+            if (oldChunk instanceof BaseFullChunk && oldChunk != chunk) {
+                ((BaseFullChunk) oldChunk).invalidateBlocks();
+            }
 
             for (Entity entity : oldEntities.values()) {
                 chunk.addEntity(entity);
@@ -1833,7 +2289,7 @@ public class Level implements ChunkManager, Metadatable {
             }
         }
 
-        this.chunkCache.remove(index);
+        this.chunkCache.invalidate(index);
         chunk.setChanged();
 
         if (!this.isChunkInUse(chunkX, chunkZ)) {
@@ -1849,6 +2305,13 @@ public class Level implements ChunkManager, Metadatable {
         return this.getChunk(x >> 4, z >> 4, true).getHighestBlockAt(x & 0x0f, z & 0x0f);
     }
 
+    /**
+     * The chunk if it is loaded in this level, without loading it.
+     */
+    public BaseFullChunk getLoadedChunk(int x, int z) {
+        return this.chunks.get(Level.chunkHash(x, z));
+    }
+
     public boolean isChunkLoaded(int x, int z) {
         return this.chunks.containsKey(Level.chunkHash(x, z)) || this.provider.isChunkLoaded(x, z);
     }
@@ -1882,12 +2345,12 @@ public class Level implements ChunkManager, Metadatable {
         this.chunkSendQueue.get(index).put(player.getLoaderId(), player);
     }
 
-    private void sendChunkFromCache(int x, int z) {
+    private void sendChunkFromCache(int x, int z, DataPacket packet) {
         String index = Level.chunkHash(x, z);
         if (this.chunkSendTasks.containsKey(index)) {
             for (Player player : this.chunkSendQueue.get(index).values()) {
                 if (player.isConnected() && player.usedChunks.containsKey(index)) {
-                    player.sendChunk(x, z, this.chunkCache.get(index));
+                    player.sendChunk(x, z, packet);
                 }
             }
 
@@ -1905,10 +2368,13 @@ public class Level implements ChunkManager, Metadatable {
                 Chunk.Entry chunkEntry = Level.getChunkXZ(index);
                 int x = chunkEntry.chunkX;
                 int z = chunkEntry.chunkZ;
-                this.chunkSendTasks.put(index, true);
-                if (this.chunkCache.containsKey(index)) {
-                    this.sendChunkFromCache(x, z);
-                    continue;
+                this.chunkSendTasks.put(index, this.chunkCache.getRevision(index));
+                if (this.cacheChunks) {
+                    BatchPacket packet = this.chunkCache.get(index);
+                    if (packet != null) {
+                        this.sendChunkFromCache(x, z, packet);
+                        continue;
+                    }
                 }
 
                 AsyncTask task = this.provider.requestChunkTask(x, z);
@@ -1926,9 +2392,10 @@ public class Level implements ChunkManager, Metadatable {
     public void chunkRequestCallback(int x, int z, byte[] payload, byte ordering) {
         String index = Level.chunkHash(x, z);
 
-        if (this.chunkCache.containsKey(index) && this.cacheChunks) {
-            this.chunkCache.put(index, Player.getChunkCacheFromData(x, z, payload, ordering));
-            this.sendChunkFromCache(x, z);
+        if (this.cacheChunks && this.chunkSendTasks.containsKey(index)) {
+            BatchPacket packet = Player.getChunkCacheFromData(x, z, payload, ordering);
+            this.chunkCache.put(index, this.chunkSendTasks.get(index), packet);
+            this.sendChunkFromCache(x, z, packet);
             return;
         }
 
@@ -1958,6 +2425,8 @@ public class Level implements ChunkManager, Metadatable {
 
         this.entities.remove(entity.getId());
         this.updateEntities.remove(entity.getId());
+        this.entityIndex.remove(entity);
+        this.movementBroadcaster.removeEntity(entity.getId());
     }
 
     public void addEntity(Entity entity) throws LevelException {
@@ -1969,6 +2438,7 @@ public class Level implements ChunkManager, Metadatable {
             this.players.put(entity.getId(), (Player) entity);
         }
         this.entities.put(entity.getId(), entity);
+        this.entityIndex.add(entity);
     }
 
     public void addTile(Tile tile) throws LevelException {
@@ -2015,6 +2485,7 @@ public class Level implements ChunkManager, Metadatable {
         }
 
         this.chunks.put(index, chunk);
+        this.lastChunk = null;
         chunk.initChunk();
 
         if (chunk.getProvider() != null) {
@@ -2119,8 +2590,15 @@ public class Level implements ChunkManager, Metadatable {
         }
 
         this.chunks.remove(index);
+        this.lastChunk = null;
+        if (chunk != null) {
+            chunk.invalidateBlocks();
+        }
         this.chunkTickList.remove(index);
-        this.chunkCache.remove(index);
+        this.chunkCache.forget(index);
+        this.updateQueue.removeChunk(x, z);
+        this.tileQueue.removeChunk(x, z);
+        this.liquidFlow.removeChunk(x, z);
 
         return true;
     }
@@ -2237,8 +2715,8 @@ public class Level implements ChunkManager, Metadatable {
             populate = true;
             for (int xx = -1; xx <= 1; ++xx) {
                 for (int zz = -1; zz <= 1; ++zz) {
-                    if (this.chunkPopulationLock.containsKey(Level.chunkHash(x + xx, z + zz))) {
-
+                    String neighbour = Level.chunkHash(x + xx, z + zz);
+                    if (this.chunkPopulationLock.containsKey(neighbour) || this.chunkGenerationQueue.containsKey(neighbour)) {
                         populate = false;
                         break;
                     }
@@ -2275,6 +2753,11 @@ public class Level implements ChunkManager, Metadatable {
         }
 
         String index = Level.chunkHash(x, z);
+        if (this.chunkPopulationLock.containsKey(index)) {
+            //a running population task generates its whole neighbourhood
+            return;
+        }
+
         if (!this.chunkGenerationQueue.containsKey(index)) {
             this.chunkGenerationQueue.put(index, true);
             GenerationTask task = new GenerationTask(this, this.getChunk(x, z, true));
@@ -2379,12 +2862,7 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public void addEntityMovement(int chunkX, int chunkZ, long entityId, double x, double y, double z, double yaw, double pitch, double headYaw) {
-        String index = Level.chunkHash(chunkX, chunkZ);
-        if (!this.moveToSend.containsKey(index)) {
-            this.moveToSend.put(index, new HashMap<>());
-        }
-
-        this.moveToSend.get(index).put(entityId, new MoveEntityPacket.Entry(entityId, x, y, z, yaw, headYaw, pitch));
+        this.movementBroadcaster.addMovement(chunkX, chunkZ, entityId, x, y, z, yaw, pitch, headYaw);
     }
 
     public boolean hasStorm() {
@@ -0,0 +1,448 @@
+package cn.nukkit.level;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Breadth first block light and sky light propagation. Not thread safe.
+ */
+public class LightEngine {
+
+    /**
+     * Queued positions further than this from the first one of a batch are left for the next batch.
+     */
+    private static final int BATCH_RANGE = 1024;
+
+    private static final int PACK_BIAS = 2048;
+
+    private final ChunkManager level;
+
+    private final IntQueue blockUpdates = new IntQueue();
+    private final IntQueue skyUpdates = new IntQueue();
+
+    private final IntQueue removalQueue = new IntQueue();
+    private final IntQueue spreadQueue = new IntQueue();
+    private final IntQueue deferred = new IntQueue();
+
+    private int originX;
+    private int originZ;
+
+    private int cachedChunkX;
+    private int cachedChunkZ;
+    private FullChunk cachedChunk;
+    private ChunkBlockDelta cachedDelta;
+
+    private int changes;
+
+    private boolean recordChanges = false;
+    private Map<String, ChunkBlockDelta> changedLight = new HashMap<>();
+
+    public LightEngine(ChunkManager level) {
+        this.level = level;
+    }
+
+    public void queueUpdate(int x, int y, int z) {
+        this.queueBlockLightUpdate(x, y, z);
+        this.queueSkyLightUpdate(x, y, z);
+    }
+
+    public void queueBlockLightUpdate(int x, int y, int z) {
+        if (y >= 0 && y < 128) {
+            this.blockUpdates.add(x, y, z);
+        }
+    }
+
+    public void queueSkyLightUpdate(int x, int y, int z) {
+        if (y >= 0 && y < 128) {
+            this.skyUpdates.add(x, y, z);
+        }
+    }
+
+    /**
+     * Queues a light update for every position of a delta.
+     */
+    public void queueUpdates(ChunkBlockDelta delta) {
+        int baseX = delta.getChunkX() << 4;
+        int baseZ = delta.getChunkZ() << 4;
+        for (int index : delta.getIndices()) {
+            this.queueUpdate(baseX | (index & 0x0f), index >> 8, baseZ | ((index >> 4) & 0x0f));
+        }
+    }
+
+    public boolean hasPendingUpdates() {
+        return !this.blockUpdates.isEmpty() || !this.skyUpdates.isEmpty();
+    }
+
+    /**
+     * Processes every queued update. Returns the number of light values that were written.
+     */
+    public int processUpdates() {
+        this.changes = 0;
+        this.cachedChunk = null;
+        while (!this.skyUpdates.isEmpty()) {
+            this.processBatch(this.skyUpdates, true);
+        }
+        while (!this.blockUpdates.isEmpty()) {
+            this.processBatch(this.blockUpdates, false);
+        }
+        this.cachedChunk = null;
+        return this.changes;
+    }
+
+    /**
+     * Makes the engine remember every position whose light it wrote, so the changes can be copied or sent.
+     */
+    public void setRecordChanges(boolean recordChanges) {
+        this.recordChanges = recordChanges;
+    }
+
+    /**
+     * Returns the positions written since the last call, by chunk index.
+     */
+    public Map<String, ChunkBlockDelta> pollChanges() {
+        Map<String, ChunkBlockDelta> changes = this.changedLight;
+        this.changedLight = new HashMap<>();
+        this.cachedChunk = null;
+        this.cachedDelta = null;
+        return changes;
+    }
+
+    /**
+     * Fills the sky light of a chunk from its own blocks: straight down from the sky until the first block that
+     * filters light, then sideways and through filtering blocks. Light does not cross the chunk borders.
+     */
+    public static void populateSkyLight(BaseFullChunk chunk) {
+        SimpleChunkManager manager = new SimpleChunkManager(0);
+        manager.setChunk(chunk.getX(), chunk.getZ(), chunk);
+        new LightEngine(manager).populateSkyLight(chunk.getX(), chunk.getZ());
+    }
+
+    private void populateSkyLight(int chunkX, int chunkZ) {
+        FullChunk chunk = this.level.getChunk(chunkX, chunkZ);
+        int[] bottom = new int[256];
+        for (int z = 0; z < 16; ++z) {
+            for (int x = 0; x < 16; ++x) {
+                int y = 127;
+                for (; y >= 0; --y) {
+                    if (Block.lightFilter[chunk.getBlockId(x, y, z)] > 1) {
+                        break;
+                    }
+                    chunk.setBlockSkyLight(x, y, z, 15);
+                }
+                bottom[(z << 4) | x] = y + 1;
+                for (; y >= 0; --y) {
+                    if (chunk.getBlockSkyLight(x, y, z) != 0) {
+                        chunk.setBlockSkyLight(x, y, z, 0);
+                    }
+                }
+            }
+        }
+
+        this.originX = chunkX << 4;
+        this.originZ = chunkZ << 4;
+        this.cachedChunk = null;
+        for (int z = 0; z < 16; ++z) {
+            for (int x = 0; x < 16; ++x) {
+                int low = bottom[(z << 4) | x];
+                if (low > 127) {
+                    continue;
+                }
+                int high = low;
+                if (x > 0) {
+                    high = Math.max(high, bottom[(z << 4) | (x - 1)]);
+                }
+                if (x < 15) {
+                    high = Math.max(high, bottom[(z << 4) | (x + 1)]);
+                }
+                if (z > 0) {
+                    high = Math.max(high, bottom[((z - 1) << 4) | x]);
+                }
+                if (z < 15) {
+                    high = Math.max(high, bottom[((z + 1) << 4) | x]);
+                }
+                for (int y = low; y <= high && y < 128; ++y) {
+                    this.spreadQueue.add(this.pack(this.originX | x, y, this.originZ | z));
+                }
+            }
+        }
+        this.propagate(true);
+        this.cachedChunk = null;
+    }
+
+    private void processBatch(IntQueue updates, boolean sky) {
+        this.originX = updates.get(0);
+        this.originZ = updates.get(2);
+
+        int count = updates.size();
+        for (int i = 0; i < count; i += 3) {
+            int x = updates.get(i);
+            int y = updates.get(i + 1);
+            int z = updates.get(i + 2);
+            if (Math.abs(x - this.originX) >= BATCH_RANGE || Math.abs(z - this.originZ) >= BATCH_RANGE) {
+                this.deferred.add(x, y, z);
+                continue;
+            }
+
+            int old = this.getLight(sky, x, y, z);
+            if (old > 0) {
+                this.setLight(sky, x, y, z, 0);
+                this.removalQueue.add(this.pack(x, y, z));
+                this.removalQueue.add(old);
+            }
+        }
+
+        while (!this.removalQueue.isEmpty()) {
+            int node = this.removalQueue.poll();
+            int level = this.removalQueue.poll();
+            int x = this.unpackX(node);
+            int y = node & 0x7f;
+            int z = this.unpackZ(node);
+            this.removeNeighbour(sky, x - 1, y, z, level, false);
+            this.removeNeighbour(sky, x + 1, y, z, level, false);
+            this.removeNeighbour(sky, x, y - 1, z, level, true);
+            this.removeNeighbour(sky, x, y + 1, z, level, false);
+            this.removeNeighbour(sky, x, y, z - 1, level, false);
+            this.removeNeighbour(sky, x, y, z + 1, level, false);
+        }
+
+        for (int i = 0; i < count; i += 3) {
+            int x = updates.get(i);
+            int y = updates.get(i + 1);
+            int z = updates.get(i + 2);
+            if (Math.abs(x - this.originX) >= BATCH_RANGE || Math.abs(z - this.originZ) >= BATCH_RANGE) {
+                continue;
+            }
+
+            this.seed(sky, x, y, z);
+            this.spreadQueue.add(this.pack(x, y, z));
+            this.spreadQueue.add(this.pack(x - 1, y, z));
+            this.spreadQueue.add(this.pack(x + 1, y, z));
+            if (y > 0) {
+                this.spreadQueue.add(this.pack(x, y - 1, z));
+            }
+            if (y < 127) {
+                this.spreadQueue.add(this.pack(x, y + 1, z));
+            }
+            this.spreadQueue.add(this.pack(x, y, z - 1));
+            this.spreadQueue.add(this.pack(x, y, z + 1));
+        }
+
+        this.propagate(sky);
+
+        updates.clear();
+        updates.addAll(this.deferred);
+        this.deferred.clear();
+    }
+
+    private void propagate(boolean sky) {
+        while (!this.spreadQueue.isEmpty()) {
+            int node = this.spreadQueue.poll();
+            int x = this.unpackX(node);
+            int y = node & 0x7f;
+            int z = this.unpackZ(node);
+            int level = this.getLight(sky, x, y, z);
+            if (level <= 1) {
+                continue;
+            }
+            this.spreadNeighbour(sky, x - 1, y, z, level, false);
+            this.spreadNeighbour(sky, x + 1, y, z, level, false);
+            this.spreadNeighbour(sky, x, y - 1, z, level, true);
+            this.spreadNeighbour(sky, x, y + 1, z, level, false);
+            this.spreadNeighbour(sky, x, y, z - 1, level, false);
+            this.spreadNeighbour(sky, x, y, z + 1, level, false);
+        }
+    }
+
+    private void removeNeighbour(boolean sky, int x, int y, int z, int level, boolean down) {
+        if (y < 0 || y > 127) {
+            return;
+        }
+        int current = this.getLight(sky, x, y, z);
+        if (current == 0) {
+            return;
+        }
+
+        if (current < level || (sky && down && level == 15 && current == 15)) {
+            this.setLight(sky, x, y, z, 0);
+            this.removalQueue.add(this.pack(x, y, z));
+            this.removalQueue.add(current);
+            if (this.seed(sky, x, y, z)) {
+                this.spreadQueue.add(this.pack(x, y, z));
+            }
+        } else {
+            this.spreadQueue.add(this.pack(x, y, z));
+        }
+    }
+
+    private void spreadNeighbour(boolean sky, int x, int y, int z, int level, boolean down) {
+        if (y < 0 || y > 127) {
+            return;
+        }
+        FullChunk chunk = this.getChunk(x, z);
+        if (chunk == null) {
+            return;
+        }
+
+        int filter = Block.lightFilter[chunk.getBlockId(x & 0x0f, y, z & 0x0f)];
+        int value = sky && down && level == 15 && filter == 1 ? 15 : level - filter;
+        if (value > (sky ? chunk.getBlockSkyLight(x & 0x0f, y, z & 0x0f) : chunk.getBlockLight(x & 0x0f, y, z & 0x0f))) {
+            this.setLight(chunk, sky, x, y, z, value);
+            if (value > 1) {
+                this.spreadQueue.add(this.pack(x, y, z));
+            }
+        }
+    }
+
+    /**
+     * Sets the light a position emits by itself: the block light of the block, or full sky light at the top of the
+     * world. Returns true if the position is a light source.
+     */
+    private boolean seed(boolean sky, int x, int y, int z) {
+        FullChunk chunk = this.getChunk(x, z);
+        if (chunk == null) {
+            return false;
+        }
+
+        int id = chunk.getBlockId(x & 0x0f, y, z & 0x0f);
+        int source;
+        if (sky) {
+            int filter = Block.lightFilter[id];
+            source = y == 127 && filter < 15 ? 16 - filter : 0;
+        } else {
+            source = Block.light[id];
+        }
+
+        if (source > 0 && source > (sky ? chunk.getBlockSkyLight(x & 0x0f, y, z & 0x0f) : chunk.getBlockLight(x & 0x0f, y, z & 0x0f))) {
+            this.setLight(chunk, sky, x, y, z, source);
+        }
+        return source > 0;
+    }
+
+    private int getLight(boolean sky, int x, int y, int z) {
+        FullChunk chunk = this.getChunk(x, z);
+        if (chunk == null) {
+            return 0;
+        }
+        return sky ? chunk.getBlockSkyLight(x & 0x0f, y, z & 0x0f) : chunk.getBlockLight(x & 0x0f, y, z & 0x0f);
+    }
+
+    private void setLight(boolean sky, int x, int y, int z, int level) {
+        FullChunk chunk = this.getChunk(x, z);
+        if (chunk != null) {
+            this.setLight(chunk, sky, x, y, z, level);
+        }
+    }
+
+    private void setLight(FullChunk chunk, boolean sky, int x, int y, int z, int level) {
+        if (sky) {
+            chunk.setBlockSkyLight(x & 0x0f, y, z & 0x0f, level);
+        } else {
+            chunk.setBlockLight(x & 0x0f, y, z & 0x0f, level);
+        }
+        ++this.changes;
+
+        if (this.recordChanges) {
+            if (this.cachedDelta == null) {
+                String index = Level.chunkHash(this.cachedChunkX, this.cachedChunkZ);
+                this.cachedDelta = this.changedLight.get(index);
+                if (this.cachedDelta == null) {
+                    this.changedLight.put(index, this.cachedDelta = new ChunkBlockDelta(this.cachedChunkX, this.cachedChunkZ));
+                }
+            }
+            this.cachedDelta.add(x & 0x0f, y, z & 0x0f);
+        }
+    }
+
+    private FullChunk getChunk(int x, int z) {
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        if (this.cachedChunk == null || this.cachedChunkX != chunkX || this.cachedChunkZ != chunkZ) {
+            FullChunk chunk = this.level.getChunk(chunkX, chunkZ);
+            if (chunk == null) {
+                return null;
+            }
+            this.cachedChunk = chunk;
+            this.cachedDelta = null;
+            this.cachedChunkX = chunkX;
+            this.cachedChunkZ = chunkZ;
+        }
+        return this.cachedChunk;
+    }
+
+    /**
+     * Packs a position into 31 bits: 12 bits per horizontal offset from the batch origin and 7 bits of height.
+     */
+    private int pack(int x, int y, int z) {
+        return ((x - this.originX + PACK_BIAS) << 19) | ((z - this.originZ + PACK_BIAS) << 7) | y;
+    }
+
+    private int unpackX(int node) {
+        return (node >>> 19) + this.originX - PACK_BIAS;
+    }
+
+    private int unpackZ(int node) {
+        return ((node >>> 7) & 0xfff) + this.originZ - PACK_BIAS;
+    }
+
+    /**
+     * Growable ring buffer of ints.
+     */
+    private static class IntQueue {
+
+        private int[] data = new int[256];
+        private int head = 0;
+        private int size = 0;
+
+        public void add(int value) {
+            if (this.size == this.data.length) {
+                int[] data = new int[this.data.length << 1];
+                for (int i = 0; i < this.size; ++i) {
+                    data[i] = this.data[(this.head + i) & (this.data.length - 1)];
+                }
+                this.data = data;
+                this.head = 0;
+            }
+            this.data[(this.head + this.size++) & (this.data.length - 1)] = value;
+        }
+
+        public void add(int x, int y, int z) {
+            this.add(x);
+            this.add(y);
+            this.add(z);
+        }
+
+        public void addAll(IntQueue queue) {
+            for (int i = 0; i < queue.size; ++i) {
+                this.add(queue.get(i));
+            }
+        }
+
+        public int poll() {
+            int value = this.data[this.head];
+            this.head = (this.head + 1) & (this.data.length - 1);
+            --this.size;
+            return value;
+        }
+
+        public int get(int index) {
+            return this.data[(this.head + index) & (this.data.length - 1)];
+        }
+
+        public int size() {
+            return this.size;
+        }
+
+        public boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        public void clear() {
+            this.head = 0;
+            this.size = 0;
+        }
+    }
+}
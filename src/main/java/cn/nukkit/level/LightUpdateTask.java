@@ -0,0 +1,97 @@
+package cn.nukkit.level;
+
+import cn.nukkit.Server;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.scheduler.AsyncTask;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Processes a batch of queued light updates on a worker, on copies of the chunks.
+ */
+public class LightUpdateTask extends AsyncTask {
+
+    public final int levelId;
+
+    private final Map<String, ChunkBlockDelta> updates;
+    private final Map<String, FullChunk> chunks = new HashMap<>();
+    private final Map<String, BaseFullChunk> snapshots = new HashMap<>();
+
+    private Map<String, ChunkBlockDelta> changes = null;
+
+    public LightUpdateTask(Level level, Map<String, ChunkBlockDelta> updates) {
+        this.levelId = level.getId();
+        this.updates = updates;
+
+        for (ChunkBlockDelta delta : updates.values()) {
+            for (int x = -1; x <= 1; ++x) {
+                for (int z = -1; z <= 1; ++z) {
+                    int chunkX = delta.getChunkX() + x;
+                    int chunkZ = delta.getChunkZ() + z;
+                    String index = Level.chunkHash(chunkX, chunkZ);
+                    if (this.chunks.containsKey(index)) {
+                        continue;
+                    }
+                    BaseFullChunk chunk = level.getChunk(chunkX, chunkZ);
+                    if (chunk != null) {
+                        this.chunks.put(index, chunk);
+                        this.snapshots.put(index, chunk.clone());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onRun() {
+        try {
+            SimpleChunkManager manager = new SimpleChunkManager(0);
+            for (BaseFullChunk chunk : this.snapshots.values()) {
+                manager.setChunk(chunk.getX(), chunk.getZ(), chunk);
+            }
+
+            LightEngine engine = new LightEngine(manager);
+            engine.setRecordChanges(true);
+            for (ChunkBlockDelta delta : this.updates.values()) {
+                engine.queueUpdates(delta);
+            }
+            engine.processUpdates();
+
+            this.changes = engine.pollChanges();
+        } catch (Exception e) {
+            Server.getInstance().getLogger().logException(e);
+        }
+    }
+
+    @Override
+    public void onCompletion(Server server) {
+        Level level = server.getLevel(this.levelId);
+        if (level != null) {
+            level.lightUpdateCallback(this);
+        }
+    }
+
+    public Map<String, ChunkBlockDelta> getUpdates() {
+        return this.updates;
+    }
+
+    /**
+     * Positions whose light changed, by chunk index, or null if the task failed.
+     */
+    public Map<String, ChunkBlockDelta> getChanges() {
+        return this.changes;
+    }
+
+    /**
+     * The live chunk the snapshot of a chunk index was taken from.
+     */
+    public FullChunk getChunk(String index) {
+        return this.chunks.get(index);
+    }
+
+    public BaseFullChunk getSnapshot(String index) {
+        return this.snapshots.get(index);
+    }
+}
@@ -0,0 +1,348 @@
+package cn.nukkit.level;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.block.Lava;
+import cn.nukkit.block.Water;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.math.Vector3;
+
+import java.util.Random;
+
+/**
+ * Flow of water and lava in a level, processed within a time budget every tick.
+ */
+public class LiquidFlow {
+
+    private static final int NONE = 0;
+    private static final int WATER = 1;
+    private static final int LAVA = 2;
+
+    //Full state used for positions in unloaded chunks, which nothing can flow into
+    private static final int WALL = Block.BEDROCK << 4;
+
+    private final Level level;
+    private final BlockUpdateScheduler queue;
+    private final byte[] kinds = new byte[256];
+    private final long budget;
+
+    private final Random random = new Random();
+    private final int[] flowCost = new int[4];
+
+    private FullChunk chunk = null;
+    private int chunkX;
+    private int chunkZ;
+
+    private int lastTickUpdates = 0;
+
+    public LiquidFlow(Level level, int currentTick, int budgetMillis) {
+        this.level = level;
+        this.queue = new BlockUpdateScheduler(currentTick);
+        this.budget = budgetMillis * 1000000L;
+
+        for (int id = 0; id < 256; ++id) {
+            Block block = Block.fullList[id << 4];
+            if (block instanceof Water) {
+                this.kinds[id] = WATER;
+            } else if (block instanceof Lava) {
+                this.kinds[id] = LAVA;
+            }
+        }
+    }
+
+    /**
+     * Number of liquid cells waiting to flow.
+     */
+    public int size() {
+        return this.queue.size();
+    }
+
+    /**
+     * Number of liquid cells processed in the last tick.
+     */
+    public int getLastTickUpdates() {
+        return this.lastTickUpdates;
+    }
+
+    public void scheduleUpdate(Vector3 pos, int delay) {
+        this.scheduleUpdate((int) pos.x, (int) pos.y, (int) pos.z, delay);
+    }
+
+    public void scheduleUpdate(int x, int y, int z, int delay) {
+        if (y < 0 || y >= 128) {
+            return;
+        }
+        this.queue.schedule(x, y, z, this.level.getServer().getTick() + delay);
+    }
+
+    public void removeChunk(int chunkX, int chunkZ) {
+        this.queue.removeChunk(chunkX, chunkZ);
+    }
+
+    public void tick(int currentTick) {
+        long deadline = System.nanoTime() + this.budget;
+        this.lastTickUpdates = 0;
+        this.chunk = null;
+
+        long update;
+        while ((update = this.queue.poll(currentTick)) != BlockUpdateScheduler.NONE) {
+            this.update(BlockUpdateScheduler.getHashX(update), BlockUpdateScheduler.getHashY(update), BlockUpdateScheduler.getHashZ(update));
+            ++this.lastTickUpdates;
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Called when a neighbour of a liquid cell changed: hardens lava touching water, and queues the cell to flow.
+     */
+    public void onNeighbourUpdate(int x, int y, int z) {
+        this.chunk = null;
+        int state = this.getState(x, y, z);
+        int kind = this.kinds[state >> 4];
+        if (kind == NONE) {
+            return;
+        }
+
+        this.checkForHarden(x, y, z);
+        this.scheduleUpdate(x, y, z, tickRate(kind));
+    }
+
+    /**
+     * Flows the liquid at the given position.
+     */
+    public void update(int x, int y, int z) {
+        this.chunk = null;
+        int state = this.getState(x, y, z);
+        int id = state >> 4;
+        int kind = this.kinds[id];
+        if (kind == NONE) {
+            return;
+        }
+
+        int decay = state & 0x0f;
+        int multiplier = kind == LAVA ? 2 : 1;
+
+        if (decay > 0) {
+            int adjacentSources = 0;
+            int smallestFlowDecay = -100;
+            for (int side = 0; side < 4; ++side) {
+                int sideState = this.getState(x + sideX(side), y, z + sideZ(side));
+                int blockDecay = (sideState >> 4) != id ? -1 : sideState & 0x0f;
+                if (blockDecay < 0) {
+                    continue;
+                } else if (blockDecay == 0) {
+                    ++adjacentSources;
+                } else if (blockDecay >= 8) {
+                    blockDecay = 0;
+                }
+                smallestFlowDecay = (smallestFlowDecay >= 0 && blockDecay >= smallestFlowDecay) ? smallestFlowDecay : blockDecay;
+            }
+
+            int k = smallestFlowDecay + multiplier;
+            if (k >= 8 || smallestFlowDecay < 0) {
+                k = -1;
+            }
+
+            int topState = this.getState(x, y + 1, z);
+            if ((topState >> 4) == id) {
+                int topFlowDecay = topState & 0x0f;
+                k = topFlowDecay >= 8 ? topFlowDecay : topFlowDecay | 0x08;
+            }
+
+            if (adjacentSources >= 2 && kind == WATER) {
+                int bottomState = this.getState(x, y - 1, z);
+                if (Block.solid[bottomState >> 4]) {
+                    k = 0;
+                } else if (this.kinds[bottomState >> 4] == WATER && (bottomState & 0x0f) == 0) {
+                    k = 0;
+                }
+            }
+
+            if (kind == LAVA && decay < 8 && k < 8 && k > 1 && this.random.nextInt(4) != 0) {
+                k = decay;
+            }
+
+            if (k != decay) {
+                decay = k;
+                if (decay < 0) {
+                    this.setBlock(x, y, z, Block.AIR, 0);
+                } else {
+                    this.setBlock(x, y, z, id, decay);
+                    this.scheduleUpdate(x, y, z, tickRate(kind));
+                }
+            }
+        }
+
+        int bottomState = this.getState(x, y - 1, z);
+        if (Block.flowable[bottomState] || this.kinds[bottomState >> 4] != NONE) {
+            if (kind == LAVA && this.kinds[bottomState >> 4] == WATER) {
+                this.setBlock(x, y - 1, z, Block.STONE, 0);
+                return;
+            }
+
+            this.setBlock(x, y - 1, z, id, decay >= 8 ? decay : decay + 8);
+            this.scheduleUpdate(x, y - 1, z, tickRate(kind));
+        } else if (decay >= 0) {
+            int l = decay >= 8 ? 1 : decay + multiplier;
+            if (l >= 8) {
+                this.checkForHarden(x, y, z);
+                return;
+            }
+
+            int directions = this.getOptimalFlowDirections(x, y, z);
+            for (int side = 0; side < 4; ++side) {
+                if ((directions & (1 << side)) != 0) {
+                    this.flowInto(x + sideX(side), y, z + sideZ(side), id, l, tickRate(kind));
+                }
+            }
+        }
+
+        this.checkForHarden(x, y, z);
+    }
+
+    private void flowInto(int x, int y, int z, int id, int decay, int delay) {
+        int state = this.getState(x, y, z);
+        if (!Block.flowable[state]) {
+            return;
+        }
+
+        if ((state >> 4) != Block.AIR) {
+            this.level.useBreakOn(new Vector3(x, y, z));
+        }
+
+        this.setBlock(x, y, z, id, decay);
+        this.scheduleUpdate(x, y, z, delay);
+    }
+
+    /**
+     * Bit mask of the sides with the shortest way down.
+     */
+    private int getOptimalFlowDirections(int x, int y, int z) {
+        for (int side = 0; side < 4; ++side) {
+            this.flowCost[side] = 1000;
+
+            int sideX = x + sideX(side);
+            int sideZ = z + sideZ(side);
+            int state = this.getState(sideX, y, sideZ);
+            boolean liquid = this.kinds[state >> 4] != NONE;
+
+            if (!Block.flowable[state] && !liquid) {
+                continue;
+            } else if (liquid && (state & 0x0f) == 0) {
+                continue;
+            } else if (Block.flowable[this.getState(sideX, y - 1, sideZ)]) {
+                this.flowCost[side] = 0;
+            } else {
+                this.flowCost[side] = this.calculateFlowCost(sideX, y, sideZ, 1, side);
+            }
+        }
+
+        int minCost = Math.min(Math.min(this.flowCost[0], this.flowCost[1]), Math.min(this.flowCost[2], this.flowCost[3]));
+
+        int directions = 0;
+        for (int side = 0; side < 4; ++side) {
+            if (this.flowCost[side] == minCost) {
+                directions |= 1 << side;
+            }
+        }
+        return directions;
+    }
+
+    private int calculateFlowCost(int x, int y, int z, int accumulatedCost, int previousDirection) {
+        int cost = 1000;
+
+        for (int side = 0; side < 4; ++side) {
+            if (side != opposite(previousDirection)) {
+                continue;
+            }
+
+            int sideX = x + sideX(side);
+            int sideZ = z + sideZ(side);
+            int state = this.getState(sideX, y, sideZ);
+            boolean liquid = this.kinds[state >> 4] != NONE;
+
+            if (!Block.flowable[state] && !liquid) {
+                continue;
+            } else if (liquid && (state & 0x0f) == 0) {
+                continue;
+            } else if (Block.flowable[this.getState(sideX, y - 1, sideZ)]) {
+                return accumulatedCost;
+            }
+
+            if (accumulatedCost >= 4) {
+                continue;
+            }
+
+            int realCost = this.calculateFlowCost(sideX, y, sideZ, accumulatedCost + 1, side);
+            if (realCost < cost) {
+                cost = realCost;
+            }
+        }
+
+        return cost;
+    }
+
+    private void checkForHarden(int x, int y, int z) {
+        int state = this.getState(x, y, z);
+        if (this.kinds[state >> 4] != LAVA) {
+            return;
+        }
+
+        if (this.kinds[this.getState(x, y - 1, z) >> 4] == WATER
+                || this.kinds[this.getState(x, y + 1, z) >> 4] == WATER
+                || this.kinds[this.getState(x, y, z - 1) >> 4] == WATER
+                || this.kinds[this.getState(x, y, z + 1) >> 4] == WATER
+                || this.kinds[this.getState(x - 1, y, z) >> 4] == WATER
+                || this.kinds[this.getState(x + 1, y, z) >> 4] == WATER) {
+            int decay = state & 0x0f;
+            if (decay == 0) {
+                this.setBlock(x, y, z, Block.OBSIDIAN, 0);
+            } else if (decay <= 4) {
+                this.setBlock(x, y, z, Block.COBBLESTONE, 0);
+            }
+        }
+    }
+
+    private void setBlock(int x, int y, int z, int id, int meta) {
+        //A fresh vector, since the update this triggers can come back here before the call returns
+        this.level.setBlock(new Vector3(x, y, z), Block.get(id, meta), false, true);
+    }
+
+    private int getState(int x, int y, int z) {
+        if (y < 0 || y >= 128) {
+            return 0;
+        }
+
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        if (this.chunk == null || this.chunkX != chunkX || this.chunkZ != chunkZ) {
+            this.chunk = this.level.getLoadedChunk(chunkX, chunkZ);
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            if (this.chunk == null) {
+                return WALL;
+            }
+        }
+
+        return this.chunk.getFullBlock(x & 0x0f, y, z & 0x0f) & 0xfff;
+    }
+
+    private static int tickRate(int kind) {
+        return kind == LAVA ? 30 : 5;
+    }
+
+    private static int opposite(int side) {
+        return side ^ 1;
+    }
+
+    //Sides in the order -x, +x, -z, +z
+
+    private static int sideX(int side) {
+        return side == 0 ? -1 : (side == 1 ? 1 : 0);
+    }
+
+    private static int sideZ(int side) {
+        return side == 2 ? -1 : (side == 3 ? 1 : 0);
+    }
+}
@@ -0,0 +1,146 @@
+package cn.nukkit.level;
+
+import cn.nukkit.Player;
+import cn.nukkit.Server;
+import cn.nukkit.math.NukkitMath;
+import cn.nukkit.network.protocol.MoveEntityPacket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends entity movement of a level per chunk, every tick to near players and less often to far ones.
+ */
+public class MovementBroadcaster {
+
+    private final Level level;
+    private final int nearRadius;
+    private final int farInterval;
+
+    private final Map<String, ChunkMovement> chunks = new HashMap<>();
+    //Chunk whose queue holds the movement of an entity, so a stale position never overtakes a newer one
+    private final Map<Long, ChunkMovement> owners = new HashMap<>();
+
+    private final List<Player> near = new ArrayList<>();
+    private final List<Player> far = new ArrayList<>();
+
+    private int lastTickEntries = 0;
+
+    /**
+     * @param nearRadius  radius in chunks in which players get movement every tick
+     * @param farInterval ticks between two movement updates for players further away, 1 to send every tick
+     */
+    public MovementBroadcaster(Level level, int nearRadius, int farInterval) {
+        this.level = level;
+        this.nearRadius = nearRadius;
+        this.farInterval = Math.max(farInterval, 1);
+    }
+
+    /**
+     * Number of movement entries sent in the last tick, counting every player that got them.
+     */
+    public int getLastTickEntries() {
+        return this.lastTickEntries;
+    }
+
+    public void addMovement(int chunkX, int chunkZ, long entityId, double x, double y, double z, double yaw, double pitch, double headYaw) {
+        String index = Level.chunkHash(chunkX, chunkZ);
+        ChunkMovement chunk = this.chunks.get(index);
+        if (chunk == null) {
+            this.chunks.put(index, chunk = new ChunkMovement(chunkX, chunkZ));
+        }
+
+        ChunkMovement owner = this.owners.put(entityId, chunk);
+        if (owner != null && owner != chunk) {
+            owner.remove(entityId);
+        }
+
+        chunk.add(new MoveEntityPacket.Entry(entityId, x, y, z, yaw, headYaw, pitch));
+    }
+
+    public void removeEntity(long entityId) {
+        ChunkMovement owner = this.owners.remove(entityId);
+        if (owner != null) {
+            owner.remove(entityId);
+        }
+    }
+
+    public void tick(int currentTick) {
+        this.lastTickEntries = 0;
+        if (this.chunks.isEmpty()) {
+            return;
+        }
+
+        int nearRadiusSquared = this.nearRadius * this.nearRadius;
+        Iterator<ChunkMovement> iterator = this.chunks.values().iterator();
+        while (iterator.hasNext()) {
+            ChunkMovement chunk = iterator.next();
+            boolean farUpdate = this.farInterval == 1 || Math.floorMod(currentTick + chunk.chunkX * 31 + chunk.chunkZ, this.farInterval) == 0;
+
+            Map<Integer, Player> players = this.level.getChunkPlayers(chunk.chunkX, chunk.chunkZ);
+            for (Player player : players.values()) {
+                int distanceX = (NukkitMath.floorDouble(player.x) >> 4) - chunk.chunkX;
+                int distanceZ = (NukkitMath.floorDouble(player.z) >> 4) - chunk.chunkZ;
+                if (this.farInterval == 1 || distanceX * distanceX + distanceZ * distanceZ <= nearRadiusSquared) {
+                    this.near.add(player);
+                } else if (farUpdate) {
+                    this.far.add(player);
+                }
+            }
+
+            if (!this.near.isEmpty() && !chunk.moved.isEmpty()) {
+                this.send(this.near, chunk.moved);
+            }
+            if (!this.far.isEmpty()) {
+                this.send(this.far, chunk.pending);
+            }
+            this.near.clear();
+            this.far.clear();
+
+            chunk.moved.clear();
+            //Chunks nobody sees drop their movement, players get the current positions when the entities spawn to them
+            if (farUpdate || players.isEmpty()) {
+                for (Long entityId : chunk.pending.keySet()) {
+                    this.owners.remove(entityId);
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private void send(List<Player> players, Map<Long, MoveEntityPacket.Entry> entries) {
+        MoveEntityPacket pk = new MoveEntityPacket();
+        pk.entities = entries.values().toArray(new MoveEntityPacket.Entry[entries.size()]);
+        Server.broadcastPacket(players, pk);
+        this.lastTickEntries += pk.entities.length * players.size();
+    }
+
+    private static class ChunkMovement {
+
+        private final int chunkX;
+        private final int chunkZ;
+
+        //Entities that moved in this tick
+        private final Map<Long, MoveEntityPacket.Entry> moved = new HashMap<>();
+        //Entities that moved since the last far update
+        private final Map<Long, MoveEntityPacket.Entry> pending = new HashMap<>();
+
+        private ChunkMovement(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private void add(MoveEntityPacket.Entry entry) {
+            this.moved.put(entry.eid, entry);
+            this.pending.put(entry.eid, entry);
+        }
+
+        private void remove(long entityId) {
+            this.moved.remove(entityId);
+            this.pending.remove(entityId);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package cn.nukkit.level;
+
+import cn.nukkit.Player;
+import cn.nukkit.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks which players load which chunks as bit sets, and caps the number of players each player sees.
+ */
+public class PlayerVisibility {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final Level level;
+    private final int maxVisiblePlayers;
+    private final int rebalanceInterval;
+
+    private final Map<String, long[]> subscribers = new HashMap<>();
+
+    private final Map<Integer, Integer> slots = new HashMap<>();
+    private Player[] players = new Player[64];
+    //Chunks each slot loads, the slot is freed when it reaches 0
+    private int[] chunkCounts = new int[64];
+    //Players spawned to each slot, used for the cap and fixed up when rebalancing
+    private int[] visibleCounts = new int[64];
+
+    //Players each slot could see, filled by the rebalance pass
+    @SuppressWarnings("unchecked")
+    private List<Player>[] candidates = new List[64];
+
+    /**
+     * @param maxVisiblePlayers players a player can see at most, 0 for no limit
+     * @param rebalanceInterval ticks between two passes that show the nearest players when the limit is reached
+     */
+    public PlayerVisibility(Level level, int maxVisiblePlayers, int rebalanceInterval) {
+        this.level = level;
+        this.maxVisiblePlayers = maxVisiblePlayers;
+        this.rebalanceInterval = Math.max(rebalanceInterval, 1);
+    }
+
+    public int getMaxVisiblePlayers() {
+        return this.maxVisiblePlayers;
+    }
+
+    public void subscribe(Player player, int chunkX, int chunkZ) {
+        Integer slot = this.slots.get(player.getLoaderId());
+        if (slot == null) {
+            slot = this.allocateSlot(player);
+        }
+        ++this.chunkCounts[slot];
+
+        String index = Level.chunkHash(chunkX, chunkZ);
+        long[] bits = this.subscribers.get(index);
+        int word = slot >> 6;
+        if (bits == null || bits.length <= word) {
+            long[] grown = new long[word + 1];
+            if (bits != null) {
+                System.arraycopy(bits, 0, grown, 0, bits.length);
+            }
+            this.subscribers.put(index, bits = grown);
+        }
+        bits[word] |= 1L << slot;
+    }
+
+    public void unsubscribe(Player player, int chunkX, int chunkZ) {
+        Integer slot = this.slots.get(player.getLoaderId());
+        if (slot == null) {
+            return;
+        }
+
+        String index = Level.chunkHash(chunkX, chunkZ);
+        long[] bits = this.subscribers.get(index);
+        int word = slot >> 6;
+        if (bits == null || bits.length <= word || (bits[word] & (1L << slot)) == 0) {
+            return;
+        }
+
+        bits[word] &= ~(1L << slot);
+        if (isEmpty(bits)) {
+            this.subscribers.remove(index);
+        }
+
+        if (--this.chunkCounts[slot] <= 0) {
+            this.slots.remove(player.getLoaderId());
+            this.players[slot] = null;
+            this.chunkCounts[slot] = 0;
+            this.visibleCounts[slot] = 0;
+        }
+    }
+
+    /**
+     * Whether the given player loads the given chunk.
+     */
+    public boolean isSubscribed(Player player, int chunkX, int chunkZ) {
+        Integer slot = this.slots.get(player.getLoaderId());
+        return slot != null && this.isSubscribed(slot, chunkX, chunkZ);
+    }
+
+    /**
+     * Spawns an entity that moved from one chunk to another to the players that only load the new chunk, and
+     * despawns it from the players that only loaded the old one.
+     *
+     * @param hadChunk whether the entity was in a chunk before
+     */
+    public void onChunkChange(Entity entity, boolean hadChunk, int oldChunkX, int oldChunkZ, int chunkX, int chunkZ) {
+        long[] from = hadChunk ? this.getSubscribers(oldChunkX, oldChunkZ) : EMPTY;
+        long[] to = this.getSubscribers(chunkX, chunkZ);
+
+        int words = Math.max(from.length, to.length);
+        for (int i = 0; i < words; ++i) {
+            long oldBits = i < from.length ? from[i] : 0;
+            long newBits = i < to.length ? to[i] : 0;
+
+            for (long despawn = oldBits & ~newBits; despawn != 0; despawn &= despawn - 1) {
+                Player viewer = this.players[(i << 6) | Long.numberOfTrailingZeros(despawn)];
+                if (viewer != null && viewer != entity) {
+                    entity.despawnFrom(viewer);
+                }
+            }
+
+            for (long spawn = newBits & ~oldBits; spawn != 0; spawn &= spawn - 1) {
+                Player viewer = this.players[(i << 6) | Long.numberOfTrailingZeros(spawn)];
+                if (viewer != null && viewer != entity) {
+                    entity.spawnTo(viewer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether one more player can be spawned to the given viewer.
+     */
+    public boolean canSpawnPlayer(Player viewer) {
+        if (this.maxVisiblePlayers <= 0) {
+            return true;
+        }
+        Integer slot = this.slots.get(viewer.getLoaderId());
+        return slot == null || this.visibleCounts[slot] < this.maxVisiblePlayers;
+    }
+
+    public void onPlayerSpawned(Player viewer) {
+        Integer slot = this.slots.get(viewer.getLoaderId());
+        if (slot != null) {
+            ++this.visibleCounts[slot];
+        }
+    }
+
+    public void onPlayerDespawned(Player viewer) {
+        Integer slot = this.slots.get(viewer.getLoaderId());
+        if (slot != null && this.visibleCounts[slot] > 0) {
+            --this.visibleCounts[slot];
+        }
+    }
+
+    /**
+     * Shows every viewer that could see more players than the limit the nearest ones.
+     */
+    public void tick(int currentTick) {
+        if (this.maxVisiblePlayers <= 0 || currentTick % this.rebalanceInterval != 0) {
+            return;
+        }
+
+        //Every player is a candidate of the viewers loading its chunk, found through the bits of that chunk
+        for (Player player : this.level.getPlayers().values()) {
+            if (player.chunk == null) {
+                continue;
+            }
+            long[] bits = this.getSubscribers(player.chunk.getX(), player.chunk.getZ());
+            for (int i = 0; i < bits.length; ++i) {
+                for (long word = bits[i]; word != 0; word &= word - 1) {
+                    int slot = (i << 6) | Long.numberOfTrailingZeros(word);
+                    if (this.players[slot] == null || this.players[slot] == player) {
+                        continue;
+                    }
+                    if (this.candidates[slot] == null) {
+                        this.candidates[slot] = new ArrayList<>();
+                    }
+                    this.candidates[slot].add(player);
+                }
+            }
+        }
+
+        for (int slot = 0; slot < this.candidates.length; ++slot) {
+            List<Player> candidates = this.candidates[slot];
+            if (candidates == null || candidates.isEmpty()) {
+                continue;
+            }
+
+            Player viewer = this.players[slot];
+            if (viewer != null && viewer.spawned) {
+                this.rebalance(slot, viewer, candidates);
+            }
+            candidates.clear();
+        }
+    }
+
+    private void rebalance(int slot, Player viewer, List<Player> candidates) {
+        if (candidates.size() > this.maxVisiblePlayers) {
+            candidates.sort((a, b) -> Double.compare(a.distanceSquared(viewer), b.distanceSquared(viewer)));
+        }
+
+        //Despawn the far players first, so the near ones fit under the limit
+        int visible = 0;
+        for (int i = 0; i < candidates.size(); ++i) {
+            Player player = candidates.get(i);
+            if (!player.getViewers().containsKey(viewer.getLoaderId())) {
+                continue;
+            }
+            if (i >= this.maxVisiblePlayers) {
+                player.despawnFrom(viewer);
+            } else {
+                ++visible;
+            }
+        }
+        this.visibleCounts[slot] = visible;
+
+        int limit = Math.min(candidates.size(), this.maxVisiblePlayers);
+        for (int i = 0; i < limit; ++i) {
+            candidates.get(i).spawnTo(viewer);
+        }
+    }
+
+    private boolean isSubscribed(int slot, int chunkX, int chunkZ) {
+        long[] bits = this.subscribers.get(Level.chunkHash(chunkX, chunkZ));
+        return bits != null && bits.length > (slot >> 6) && (bits[slot >> 6] & (1L << slot)) != 0;
+    }
+
+    private long[] getSubscribers(int chunkX, int chunkZ) {
+        long[] bits = this.subscribers.get(Level.chunkHash(chunkX, chunkZ));
+        return bits == null ? EMPTY : bits;
+    }
+
+    private int allocateSlot(Player player) {
+        int slot = 0;
+        while (slot < this.players.length && this.players[slot] != null) {
+            ++slot;
+        }
+
+        if (slot == this.players.length) {
+            int capacity = this.players.length << 1;
+            Player[] players = new Player[capacity];
+            System.arraycopy(this.players, 0, players, 0, this.players.length);
+            this.players = players;
+            int[] chunkCounts = new int[capacity];
+            System.arraycopy(this.chunkCounts, 0, chunkCounts, 0, this.chunkCounts.length);
+            this.chunkCounts = chunkCounts;
+            int[] visibleCounts = new int[capacity];
+            System.arraycopy(this.visibleCounts, 0, visibleCounts, 0, this.visibleCounts.length);
+            this.visibleCounts = visibleCounts;
+            @SuppressWarnings("unchecked")
+            List<Player>[] candidates = new List[capacity];
+            System.arraycopy(this.candidates, 0, candidates, 0, this.candidates.length);
+            this.candidates = candidates;
+        }
+
+        this.players[slot] = player;
+        this.chunkCounts[slot] = 0;
+        this.visibleCounts[slot] = 0;
+        this.slots.put(player.getLoaderId(), slot);
+        return slot;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
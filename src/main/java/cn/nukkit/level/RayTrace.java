@@ -0,0 +1,358 @@
+package cn.nukkit.level;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.math.AxisAlignedBB;
+import cn.nukkit.math.NukkitMath;
+import cn.nukkit.math.Vector3;
+
+/**
+ * Reusable per-thread ray trace over the blocks and entities of a level, walking the voxels along the ray.
+ */
+public class RayTrace implements EntityVisitor {
+
+    public static final int MISS = -1;
+    public static final int BLOCK = 0;
+    public static final int ENTITY = 1;
+
+    private static final ThreadLocal<RayTrace> traces = ThreadLocal.withInitial(RayTrace::new);
+
+    private final AxisAlignedBB searchBox = new AxisAlignedBB(0, 0, 0, 0, 0, 0);
+
+    private int typeOfHit = MISS;
+    private int blockX;
+    private int blockY;
+    private int blockZ;
+    private int sideHit;
+    private double fraction;
+    private Entity entityHit;
+
+    //Ray of the current trace
+    private double fromX;
+    private double fromY;
+    private double fromZ;
+    private double deltaX;
+    private double deltaY;
+    private double deltaZ;
+
+    //State of the entity search of the current trace
+    private Entity ignore;
+    private double grow;
+    private double hitFraction;
+    private int hitSide;
+
+    /**
+     * The trace of the current thread, without a result.
+     */
+    public static RayTrace get() {
+        RayTrace trace = traces.get();
+        trace.clear();
+        return trace;
+    }
+
+    private void clear() {
+        this.typeOfHit = MISS;
+        this.sideHit = -1;
+        this.fraction = 1;
+        this.entityHit = null;
+        this.ignore = null;
+    }
+
+    private void setRay(double fromX, double fromY, double fromZ, double toX, double toY, double toZ) {
+        this.fromX = fromX;
+        this.fromY = fromY;
+        this.fromZ = fromZ;
+        this.deltaX = toX - fromX;
+        this.deltaY = toY - fromY;
+        this.deltaZ = toZ - fromZ;
+    }
+
+    /**
+     * Finds the first block with a collision box on the ray.
+     *
+     * @return whether a block was hit
+     */
+    public boolean traceBlocks(Level level, double fromX, double fromY, double fromZ, double toX, double toY, double toZ) {
+        this.clear();
+        this.setRay(fromX, fromY, fromZ, toX, toY, toZ);
+
+        int x = NukkitMath.floorDouble(fromX);
+        int y = NukkitMath.floorDouble(fromY);
+        int z = NukkitMath.floorDouble(fromZ);
+        int endX = NukkitMath.floorDouble(toX);
+        int endY = NukkitMath.floorDouble(toY);
+        int endZ = NukkitMath.floorDouble(toZ);
+
+        int stepX = this.deltaX > 0 ? 1 : (this.deltaX < 0 ? -1 : 0);
+        int stepY = this.deltaY > 0 ? 1 : (this.deltaY < 0 ? -1 : 0);
+        int stepZ = this.deltaZ > 0 ? 1 : (this.deltaZ < 0 ? -1 : 0);
+
+        //Fraction of the ray between two borders of each axis, and until the next border of each axis
+        double stepFractionX = stepX == 0 ? Double.MAX_VALUE : stepX / this.deltaX;
+        double stepFractionY = stepY == 0 ? Double.MAX_VALUE : stepY / this.deltaY;
+        double stepFractionZ = stepZ == 0 ? Double.MAX_VALUE : stepZ / this.deltaZ;
+        double nextX = stepX == 0 ? Double.MAX_VALUE : ((stepX > 0 ? x + 1 : x) - fromX) / this.deltaX;
+        double nextY = stepY == 0 ? Double.MAX_VALUE : ((stepY > 0 ? y + 1 : y) - fromY) / this.deltaY;
+        double nextZ = stepZ == 0 ? Double.MAX_VALUE : ((stepZ > 0 ? z + 1 : z) - fromZ) / this.deltaZ;
+
+        FullChunk chunk = null;
+        while (true) {
+            if (y >= 0 && y < 128) {
+                if (chunk == null || chunk.getX() != x >> 4 || chunk.getZ() != z >> 4) {
+                    chunk = level.getLoadedChunk(x >> 4, z >> 4);
+                    if (chunk == null) {
+                        return false;
+                    }
+                }
+
+                if (this.testBlock(level, chunk, x, y, z)) {
+                    return true;
+                }
+            }
+
+            if (x == endX && y == endY && z == endZ) {
+                return false;
+            }
+
+            if (nextX <= nextY && nextX <= nextZ) {
+                if (nextX > 1) {
+                    return false;
+                }
+                x += stepX;
+                nextX += stepFractionX;
+            } else if (nextY <= nextZ) {
+                if (nextY > 1) {
+                    return false;
+                }
+                y += stepY;
+                nextY += stepFractionY;
+            } else {
+                if (nextZ > 1) {
+                    return false;
+                }
+                z += stepZ;
+                nextZ += stepFractionZ;
+            }
+        }
+    }
+
+    private boolean testBlock(Level level, FullChunk chunk, int x, int y, int z) {
+        int fullId = chunk.getFullBlock(x & 0x0f, y, z & 0x0f);
+        if (Block.passThrough[fullId]) {
+            return false;
+        }
+
+        double f;
+        if (Block.dynamicBoundingBox[fullId >> 4]) {
+            AxisAlignedBB bb = level.getBlock(new Vector3(x, y, z)).getBoundingBox();
+            if (bb == null) {
+                return false;
+            }
+            f = this.intersect(bb.minX, bb.minY, bb.minZ, bb.maxX, bb.maxY, bb.maxZ);
+        } else {
+            AxisAlignedBB shape = Block.boundingBoxes[fullId];
+            if (shape == null) {
+                return false;
+            }
+            f = this.intersect(x + shape.minX, y + shape.minY, z + shape.minZ, x + shape.maxX, y + shape.maxY, z + shape.maxZ);
+        }
+
+        if (f < 0) {
+            return false;
+        }
+
+        this.typeOfHit = BLOCK;
+        this.blockX = x;
+        this.blockY = y;
+        this.blockZ = z;
+        this.sideHit = this.hitSide;
+        this.fraction = f;
+        return true;
+    }
+
+    /**
+     * Finds the nearest entity whose box, grown by the given size, is crossed by the ray before the given fraction of
+     * its length.
+     *
+     * @param entity   entity that casts the ray, only entities it can collide with are hit, or null for all entities
+     * @param ignore   another entity that can not be hit, or null
+     * @param grow     size the boxes of the entities are grown by on every side
+     * @param fraction fraction of the ray to search, 1 for the whole ray
+     * @return whether an entity was hit
+     */
+    public boolean traceEntities(Level level, double fromX, double fromY, double fromZ, double toX, double toY, double toZ, Entity entity, Entity ignore, double grow, double fraction) {
+        this.clear();
+        this.setRay(fromX, fromY, fromZ, toX, toY, toZ);
+        this.ignore = ignore;
+        this.grow = grow;
+        this.fraction = fraction;
+
+        this.searchBox.setBounds(
+                Math.min(fromX, toX) - grow,
+                Math.min(fromY, toY) - grow,
+                Math.min(fromZ, toZ) - grow,
+                Math.max(fromX, toX) + grow,
+                Math.max(fromY, toY) + grow,
+                Math.max(fromZ, toZ) + grow
+        );
+        level.forEachCollidingEntity(this.searchBox, entity, this);
+
+        this.ignore = null;
+        if (this.entityHit == null) {
+            this.fraction = 1;
+            return false;
+        }
+        this.typeOfHit = ENTITY;
+        return true;
+    }
+
+    @Override
+    public boolean visit(Entity entity) {
+        if (entity == this.ignore) {
+            return true;
+        }
+
+        AxisAlignedBB bb = entity.boundingBox;
+        double f = this.intersect(bb.minX - this.grow, bb.minY - this.grow, bb.minZ - this.grow, bb.maxX + this.grow, bb.maxY + this.grow, bb.maxZ + this.grow);
+        if (f >= 0 && (f < this.fraction || (f == this.fraction && this.entityHit == null))) {
+            this.fraction = f;
+            this.sideHit = this.hitSide;
+            this.entityHit = entity;
+        }
+        return true;
+    }
+
+    /**
+     * Whether no block with a collision box is on the ray.
+     */
+    public boolean hasLineOfSight(Level level, double fromX, double fromY, double fromZ, double toX, double toY, double toZ) {
+        return !this.traceBlocks(level, fromX, fromY, fromZ, toX, toY, toZ);
+    }
+
+    /**
+     * Fraction of the ray where it enters a box, 0 if it starts inside, or -1 if it misses the box. Sets the side
+     * that was entered, -1 if the ray starts inside.
+     */
+    private double intersect(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        double enter = 0;
+        double exit = 1;
+        int side = -1;
+
+        if (this.deltaX == 0) {
+            if (this.fromX < minX || this.fromX > maxX) {
+                return -1;
+            }
+        } else {
+            double near = ((this.deltaX > 0 ? minX : maxX) - this.fromX) / this.deltaX;
+            double far = ((this.deltaX > 0 ? maxX : minX) - this.fromX) / this.deltaX;
+            if (near > enter) {
+                enter = near;
+                side = this.deltaX > 0 ? Vector3.SIDE_WEST : Vector3.SIDE_EAST;
+            }
+            exit = Math.min(exit, far);
+        }
+
+        if (this.deltaY == 0) {
+            if (this.fromY < minY || this.fromY > maxY) {
+                return -1;
+            }
+        } else {
+            double near = ((this.deltaY > 0 ? minY : maxY) - this.fromY) / this.deltaY;
+            double far = ((this.deltaY > 0 ? maxY : minY) - this.fromY) / this.deltaY;
+            if (near > enter) {
+                enter = near;
+                side = this.deltaY > 0 ? Vector3.SIDE_DOWN : Vector3.SIDE_UP;
+            }
+            exit = Math.min(exit, far);
+        }
+
+        if (this.deltaZ == 0) {
+            if (this.fromZ < minZ || this.fromZ > maxZ) {
+                return -1;
+            }
+        } else {
+            double near = ((this.deltaZ > 0 ? minZ : maxZ) - this.fromZ) / this.deltaZ;
+            double far = ((this.deltaZ > 0 ? maxZ : minZ) - this.fromZ) / this.deltaZ;
+            if (near > enter) {
+                enter = near;
+                side = this.deltaZ > 0 ? Vector3.SIDE_NORTH : Vector3.SIDE_SOUTH;
+            }
+            exit = Math.min(exit, far);
+        }
+
+        if (enter > exit) {
+            return -1;
+        }
+        this.hitSide = side;
+        return enter;
+    }
+
+    /**
+     * {@link #MISS}, {@link #BLOCK} or {@link #ENTITY}.
+     */
+    public int getTypeOfHit() {
+        return this.typeOfHit;
+    }
+
+    public int getBlockX() {
+        return this.blockX;
+    }
+
+    public int getBlockY() {
+        return this.blockY;
+    }
+
+    public int getBlockZ() {
+        return this.blockZ;
+    }
+
+    /**
+     * Side of the block or entity box that was hit, -1 if the ray started inside it.
+     */
+    public int getSideHit() {
+        return this.sideHit;
+    }
+
+    public Entity getEntityHit() {
+        return this.entityHit;
+    }
+
+    /**
+     * Fraction of the length of the ray where it hit, 1 if it hit nothing.
+     */
+    public double getFraction() {
+        return this.fraction;
+    }
+
+    public double getHitX() {
+        return this.fromX + this.deltaX * this.fraction;
+    }
+
+    public double getHitY() {
+        return this.fromY + this.deltaY * this.fraction;
+    }
+
+    public double getHitZ() {
+        return this.fromZ + this.deltaZ * this.fraction;
+    }
+
+    /**
+     * Copies the result, or returns null if nothing was hit.
+     */
+    public MovingObjectPosition toMovingObjectPosition() {
+        if (this.typeOfHit == MISS) {
+            return null;
+        }
+
+        MovingObjectPosition objectPosition;
+        if (this.typeOfHit == ENTITY) {
+            objectPosition = MovingObjectPosition.fromEntity(this.entityHit);
+            objectPosition.hitVector = new Vector3(this.getHitX(), this.getHitY(), this.getHitZ());
+        } else {
+            objectPosition = MovingObjectPosition.fromBlock(this.blockX, this.blockY, this.blockZ, this.sideHit, new Vector3(this.getHitX(), this.getHitY(), this.getHitZ()));
+        }
+        objectPosition.sideHit = this.sideHit;
+        return objectPosition;
+    }
+}
@@ -46,4 +46,9 @@ public interface ChunkSection {
     byte[] getSkyLightArray();
 
     byte[] getLightArray();
+
+    /**
+     * Returns an independent copy of this section, safe to modify from another thread.
+     */
+    ChunkSection copy();
 }
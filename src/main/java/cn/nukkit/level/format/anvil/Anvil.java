@@ -2,16 +2,13 @@ package cn.nukkit.level.format.anvil;
 
 import cn.nukkit.level.Level;
 import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.level.format.generic.BaseFullChunk;
 import cn.nukkit.level.format.generic.BaseLevelProvider;
+import cn.nukkit.level.format.generic.ChunkRequestTask;
 import cn.nukkit.level.generator.Generator;
 import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.CompoundTag;
-import cn.nukkit.network.protocol.FullChunkDataPacket;
 import cn.nukkit.scheduler.AsyncTask;
-import cn.nukkit.tile.Spawnable;
-import cn.nukkit.tile.Tile;
-import cn.nukkit.utils.Binary;
-import cn.nukkit.utils.BinaryStream;
 import cn.nukkit.utils.ChunkException;
 
 import java.io.File;
@@ -28,6 +25,8 @@ import java.util.regex.Pattern;
  */
 public class Anvil extends BaseLevelProvider {
 
+    public static boolean PALETTED_SECTIONS = false;
+
     protected Map<String, RegionLoader> regions = new HashMap<>();
 
     protected Map<String, Chunk> chunks = new HashMap<>();
@@ -107,53 +106,12 @@ public class Anvil extends BaseLevelProvider {
 
     @Override
     public AsyncTask requestChunkTask(int x, int z) throws ChunkException {
-        FullChunk chunk = this.getChunk(x, z, false);
+        BaseFullChunk chunk = this.getChunk(x, z, false);
         if (chunk == null) {
             throw new ChunkException("Invalid Chunk Set");
         }
 
-        byte[] tiles = new byte[0];
-
-        if (!chunk.getTiles().isEmpty()) {
-            List<CompoundTag> tagList = new ArrayList<>();
-
-            for (Tile tile : chunk.getTiles().values()) {
-                if (tile instanceof Spawnable) {
-                    tagList.add(((Spawnable) tile).getSpawnCompound());
-                }
-            }
-
-            try {
-                tiles = NBTIO.write(tagList, ByteOrder.LITTLE_ENDIAN);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }
-
-        BinaryStream extraData = new BinaryStream();
-        extraData.putLInt(chunk.getBlockExtraDataArray().size());
-        for (Integer key : chunk.getBlockExtraDataArray().values()) {
-            extraData.putLInt(key);
-            extraData.putLShort(chunk.getBlockExtraDataArray().get(key));
-        }
-
-        BinaryStream stream = new BinaryStream();
-        stream.put(chunk.getBlockIdArray());
-        stream.put(chunk.getBlockDataArray());
-        stream.put(chunk.getBlockSkyLightArray());
-        stream.put(chunk.getBlockLightArray());
-        for (int height : chunk.getHeightMapArray()) {
-            stream.putByte((byte) (height & 0xff));
-        }
-        for (int color : chunk.getBiomeColorArray()) {
-            stream.put(Binary.writeInt(color));
-        }
-        stream.put(extraData.getBuffer());
-        stream.put(tiles);
-
-        this.getLevel().chunkRequestCallback(x, z, stream.getBuffer(), FullChunkDataPacket.ORDER_LAYERED);
-
-        return null;
+        return new ChunkRequestTask(this.getLevel(), chunk);
     }
 
     @Override
@@ -310,6 +268,13 @@ public class Anvil extends BaseLevelProvider {
         this.chunks.put(index, (Chunk) chunk);
     }
 
+    public static cn.nukkit.level.format.ChunkSection createChunkSection(int Y) {
+        if (PALETTED_SECTIONS) {
+            return new PalettedChunkSection(Y);
+        }
+        return createChunkSection((byte) Y);
+    }
+
     public static ChunkSection createChunkSection(byte Y) {
         CompoundTag nbt = new CompoundTag();
         nbt.putByte("Y", Y);
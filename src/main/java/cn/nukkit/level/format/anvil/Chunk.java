@@ -69,7 +69,7 @@ public class Chunk extends BaseChunk {
             if (section instanceof CompoundTag) {
                 int y = ((CompoundTag) section).getByte("Y");
                 if (y < 8) {
-                    sections[y] = new ChunkSection((CompoundTag) section);
+                    sections[y] = Anvil.PALETTED_SECTIONS ? new PalettedChunkSection((CompoundTag) section) : new ChunkSection((CompoundTag) section);
                 }
             }
         }
@@ -288,6 +288,8 @@ public class Chunk extends BaseChunk {
         for (cn.nukkit.level.format.ChunkSection section : this.getSections()) {
             if (section instanceof EmptyChunkSection) {
                 continue;
+            } else if (section instanceof PalettedChunkSection) {
+                ((PalettedChunkSection) section).compact();
             }
             CompoundTag s = new CompoundTag(null);
             s.putByte("Y", (byte) (section.getY()));
@@ -342,6 +344,11 @@ public class Chunk extends BaseChunk {
         }
     }
 
+    @Override
+    protected cn.nukkit.level.format.ChunkSection createSection(int Y) {
+        return Anvil.createChunkSection(Y);
+    }
+
     public static Chunk getEmptyChunk(int chunkX, int chunkZ) {
         return getEmptyChunk(chunkX, chunkZ, null);
     }
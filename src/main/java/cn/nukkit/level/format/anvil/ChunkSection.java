@@ -16,6 +16,14 @@ public class ChunkSection implements cn.nukkit.level.format.ChunkSection {
     private byte[] blockLight;
     private byte[] skyLight;
 
+    private ChunkSection(ChunkSection section) {
+        this.y = section.y;
+        this.blocks = section.blocks.clone();
+        this.data = section.data.clone();
+        this.blockLight = section.blockLight.clone();
+        this.skyLight = section.skyLight.clone();
+    }
+
     public ChunkSection(CompoundTag nbt) {
         this.y = nbt.getByte("Y");
         this.blocks = nbt.getByteArray("Blocks");
@@ -235,4 +243,8 @@ public class ChunkSection implements cn.nukkit.level.format.ChunkSection {
         return this.blockLight;
     }
 
+    @Override
+    public ChunkSection copy() {
+        return new ChunkSection(this);
+    }
 }
@@ -0,0 +1,438 @@
+package cn.nukkit.level.format.anvil;
+
+import cn.nukkit.nbt.tag.CompoundTag;
+
+import java.util.Arrays;
+
+/**
+ * Chunk section storing block states as bit-packed indices into a per-section palette.
+ */
+public class PalettedChunkSection implements cn.nukkit.level.format.ChunkSection {
+
+    private static final int MAX_PALETTE_BITS = 8;
+    private static final int DIRECT_BITS = 16;
+
+    private final int y;
+
+    private int[] palette;
+    private int paletteSize;
+    private int bits;
+    private long[] indices;
+
+    private byte uniformBlockLight;
+    private byte[] blockLight;
+
+    private byte uniformSkyLight;
+    private byte[] skyLight;
+
+    public PalettedChunkSection(int y) {
+        this.y = y;
+        this.palette = new int[]{0};
+        this.paletteSize = 1;
+        this.uniformBlockLight = 0;
+        this.uniformSkyLight = 15;
+    }
+
+    private PalettedChunkSection(PalettedChunkSection section) {
+        this.y = section.y;
+        this.palette = section.palette.clone();
+        this.paletteSize = section.paletteSize;
+        this.bits = section.bits;
+        this.indices = section.indices != null ? section.indices.clone() : null;
+        this.uniformBlockLight = section.uniformBlockLight;
+        this.blockLight = section.blockLight != null ? section.blockLight.clone() : null;
+        this.uniformSkyLight = section.uniformSkyLight;
+        this.skyLight = section.skyLight != null ? section.skyLight.clone() : null;
+    }
+
+    public PalettedChunkSection(CompoundTag nbt) {
+        this(nbt.getByte("Y"), nbt.getByteArray("Blocks"), nbt.getByteArray("Data"), nbt.getByteArray("BlockLight"), nbt.getByteArray("SkyLight"));
+    }
+
+    public PalettedChunkSection(int y, byte[] blocks, byte[] data, byte[] blockLight, byte[] skyLight) {
+        this.y = y;
+        this.palette = new int[]{0};
+        this.paletteSize = 1;
+
+        if (blocks.length == 4096 && data.length == 2048) {
+            int first = (blocks[0] & 0xff) << 4 | (data[0] & 0x0f);
+            this.palette[0] = first;
+            for (int i = 0; i < 4096; ++i) {
+                int meta = data[i >> 1] & 0xff;
+                this.set(i, (blocks[i] & 0xff) << 4 | ((i & 1) == 0 ? meta & 0x0f : meta >> 4));
+            }
+        }
+
+        this.blockLight = compactNibbles(blockLight);
+        this.uniformBlockLight = this.blockLight == null ? uniformNibble(blockLight, 0) : 0;
+        this.skyLight = compactNibbles(skyLight);
+        this.uniformSkyLight = this.skyLight == null ? uniformNibble(skyLight, 15) : 0;
+    }
+
+    private static byte uniformNibble(byte[] array, int fallback) {
+        return (byte) (array.length == 2048 ? array[0] & 0x0f : fallback);
+    }
+
+    private static byte[] compactNibbles(byte[] array) {
+        if (array.length != 2048) {
+            return null;
+        }
+        byte first = array[0];
+        if (((first >> 4) & 0x0f) == (first & 0x0f)) {
+            for (int i = 1; i < 2048; ++i) {
+                if (array[i] != first) {
+                    return array.clone();
+                }
+            }
+            return null;
+        }
+        return array.clone();
+    }
+
+    private int get(int index) {
+        if (this.bits == 0) {
+            return this.palette[0];
+        }
+        int shift = 6 - Integer.numberOfTrailingZeros(this.bits);
+        int value = (int) (this.indices[index >>> shift] >>> ((index & ((1 << shift) - 1)) * this.bits)) & ((1 << this.bits) - 1);
+        return this.bits == DIRECT_BITS ? value : this.palette[value];
+    }
+
+    private void set(int index, int state) {
+        int value;
+        if (this.bits == DIRECT_BITS) {
+            value = state;
+        } else {
+            value = -1;
+            for (int i = 0; i < this.paletteSize; ++i) {
+                if (this.palette[i] == state) {
+                    value = i;
+                    break;
+                }
+            }
+            if (value == -1) {
+                value = this.paletteSize;
+                if (value >= (1 << this.bits)) {
+                    this.resize(this.bits == 0 ? 1 : this.bits << 1);
+                    if (this.bits == DIRECT_BITS) {
+                        value = state;
+                    }
+                }
+                if (this.bits != DIRECT_BITS) {
+                    if (this.paletteSize == this.palette.length) {
+                        this.palette = Arrays.copyOf(this.palette, this.palette.length << 1);
+                    }
+                    this.palette[this.paletteSize++] = state;
+                }
+            } else if (this.bits == 0) {
+                return;
+            }
+        }
+
+        int shift = 6 - Integer.numberOfTrailingZeros(this.bits);
+        int offset = (index & ((1 << shift) - 1)) * this.bits;
+        long mask = ((1L << this.bits) - 1) << offset;
+        int word = index >>> shift;
+        this.indices[word] = (this.indices[word] & ~mask) | (((long) value << offset) & mask);
+    }
+
+    private void resize(int newBits) {
+        if (newBits > MAX_PALETTE_BITS) {
+            newBits = DIRECT_BITS;
+        }
+        int[] states = new int[4096];
+        for (int i = 0; i < 4096; ++i) {
+            states[i] = this.get(i);
+        }
+        this.bits = newBits;
+        this.indices = new long[4096 * newBits / 64];
+        if (newBits == DIRECT_BITS) {
+            this.palette = new int[0];
+            this.paletteSize = 0;
+        }
+        for (int i = 0; i < 4096; ++i) {
+            this.set(i, states[i]);
+        }
+    }
+
+    /**
+     * Rebuilds the palette from the states still in use and collapses uniform light arrays.
+     * Writes only ever grow a palette, so this should be called from time to time, for instance before saving.
+     */
+    public void compact() {
+        int[] states = new int[4096];
+        for (int i = 0; i < 4096; ++i) {
+            states[i] = this.get(i);
+        }
+        this.palette = new int[]{states[0]};
+        this.paletteSize = 1;
+        this.bits = 0;
+        this.indices = null;
+        for (int i = 0; i < 4096; ++i) {
+            this.set(i, states[i]);
+        }
+
+        if (this.blockLight != null) {
+            byte first = this.blockLight[0];
+            if ((this.blockLight = compactNibbles(this.blockLight)) == null) {
+                this.uniformBlockLight = (byte) (first & 0x0f);
+            }
+        }
+        if (this.skyLight != null) {
+            byte first = this.skyLight[0];
+            if ((this.skyLight = compactNibbles(this.skyLight)) == null) {
+                this.uniformSkyLight = (byte) (first & 0x0f);
+            }
+        }
+    }
+
+    public boolean isUniform() {
+        return this.bits == 0;
+    }
+
+    public int getPaletteSize() {
+        return this.bits == DIRECT_BITS ? -1 : this.paletteSize;
+    }
+
+    public int getBitsPerBlock() {
+        return this.bits;
+    }
+
+    /**
+     * Approximate heap size of the storage arrays in bytes, excluding object headers.
+     */
+    public int getMemoryUsage() {
+        return this.palette.length * 4
+                + (this.indices != null ? this.indices.length * 8 : 0)
+                + (this.blockLight != null ? 2048 : 0)
+                + (this.skyLight != null ? 2048 : 0);
+    }
+
+    /**
+     * Writes this section in the anvil layout into larger destination arrays, without intermediate copies.
+     */
+    public void copyTo(byte[] ids, int idOffset, byte[] data, byte[] skyLight, byte[] blockLight, int nibbleOffset) {
+        if (this.bits == 0) {
+            int state = this.palette[0];
+            int meta = state & 0x0f;
+            Arrays.fill(ids, idOffset, idOffset + 4096, (byte) (state >> 4));
+            Arrays.fill(data, nibbleOffset, nibbleOffset + 2048, (byte) ((meta << 4) | meta));
+        } else {
+            for (int i = 0; i < 4096; i += 2) {
+                int a = this.get(i);
+                int b = this.get(i + 1);
+                ids[idOffset + i] = (byte) (a >> 4);
+                ids[idOffset + i + 1] = (byte) (b >> 4);
+                data[nibbleOffset + (i >> 1)] = (byte) ((a & 0x0f) | ((b & 0x0f) << 4));
+            }
+        }
+
+        if (this.skyLight != null) {
+            System.arraycopy(this.skyLight, 0, skyLight, nibbleOffset, 2048);
+        } else {
+            Arrays.fill(skyLight, nibbleOffset, nibbleOffset + 2048, (byte) ((this.uniformSkyLight << 4) | this.uniformSkyLight));
+        }
+
+        if (this.blockLight != null) {
+            System.arraycopy(this.blockLight, 0, blockLight, nibbleOffset, 2048);
+        } else {
+            Arrays.fill(blockLight, nibbleOffset, nibbleOffset + 2048, (byte) ((this.uniformBlockLight << 4) | this.uniformBlockLight));
+        }
+    }
+
+    @Override
+    public int getY() {
+        return this.y;
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        return this.get((y << 8) + (z << 4) + x) >> 4;
+    }
+
+    @Override
+    public void setBlockId(int x, int y, int z, int id) {
+        int i = (y << 8) + (z << 4) + x;
+        this.set(i, ((id & 0xff) << 4) | (this.get(i) & 0x0f));
+    }
+
+    @Override
+    public int getBlockData(int x, int y, int z) {
+        return this.get((y << 8) + (z << 4) + x) & 0x0f;
+    }
+
+    @Override
+    public void setBlockData(int x, int y, int z, int data) {
+        int i = (y << 8) + (z << 4) + x;
+        this.set(i, (this.get(i) & 0xff0) | (data & 0x0f));
+    }
+
+    @Override
+    public int getFullBlock(int x, int y, int z) {
+        return this.get((y << 8) + (z << 4) + x);
+    }
+
+    @Override
+    public boolean setBlock(int x, int y, int z) {
+        return this.setBlock(x, y, z, null, null);
+    }
+
+    @Override
+    public boolean setBlock(int x, int y, int z, Integer blockId) {
+        return this.setBlock(x, y, z, blockId, null);
+    }
+
+    @Override
+    public boolean setBlock(int x, int y, int z, Integer blockId, Integer meta) {
+        int i = (y << 8) + (z << 4) + x;
+        int old = this.get(i);
+        int state = old;
+        if (blockId != null) {
+            state = ((blockId & 0xff) << 4) | (state & 0x0f);
+        }
+        if (meta != null) {
+            state = (state & 0xff0) | (meta & 0x0f);
+        }
+        if (state != old) {
+            this.set(i, state);
+            return true;
+        }
+        return false;
+    }
+
+    private static int getNibble(byte[] array, int x, int y, int z) {
+        int b = array[(y << 7) + (z << 3) + (x >> 1)] & 0xff;
+        if ((x & 1) == 0) {
+            return b & 0x0f;
+        }
+        return b >> 4;
+    }
+
+    private static void setNibble(byte[] array, int x, int y, int z, int level) {
+        int i = (y << 7) + (z << 3) + (x >> 1);
+        int old = array[i] & 0xff;
+        if ((x & 1) == 0) {
+            array[i] = (byte) ((old & 0xf0) | (level & 0x0f));
+        } else {
+            array[i] = (byte) (((level & 0x0f) << 4) | (old & 0x0f));
+        }
+    }
+
+    private static byte[] expandNibbles(int level) {
+        byte[] array = new byte[2048];
+        Arrays.fill(array, (byte) ((level << 4) | level));
+        return array;
+    }
+
+    @Override
+    public int getBlockSkyLight(int x, int y, int z) {
+        return this.skyLight == null ? this.uniformSkyLight : getNibble(this.skyLight, x, y, z);
+    }
+
+    @Override
+    public void setBlockSkyLight(int x, int y, int z, int level) {
+        if (this.skyLight == null) {
+            if ((level & 0x0f) == this.uniformSkyLight) {
+                return;
+            }
+            this.skyLight = expandNibbles(this.uniformSkyLight);
+        }
+        setNibble(this.skyLight, x, y, z, level);
+    }
+
+    @Override
+    public int getBlockLight(int x, int y, int z) {
+        return this.blockLight == null ? this.uniformBlockLight : getNibble(this.blockLight, x, y, z);
+    }
+
+    @Override
+    public void setBlockLight(int x, int y, int z, int level) {
+        if (this.blockLight == null) {
+            if ((level & 0x0f) == this.uniformBlockLight) {
+                return;
+            }
+            this.blockLight = expandNibbles(this.uniformBlockLight);
+        }
+        setNibble(this.blockLight, x, y, z, level);
+    }
+
+    @Override
+    public byte[] getBlockIdColumn(int x, int z) {
+        int i = (z << 4) + x;
+        byte[] column = new byte[16];
+        for (int y = 0; y < 16; y++) {
+            column[y] = (byte) (this.get((y << 8) + i) >> 4);
+        }
+        return column;
+    }
+
+    @Override
+    public byte[] getBlockDataColumn(int x, int z) {
+        int i = (z << 4) + x;
+        byte[] column = new byte[8];
+        for (int y = 0; y < 16; y += 2) {
+            column[y >> 1] = (byte) ((this.get((y << 8) + i) & 0x0f) | ((this.get(((y + 1) << 8) + i) & 0x0f) << 4));
+        }
+        return column;
+    }
+
+    @Override
+    public byte[] getBlockSkyLightColumn(int x, int z) {
+        byte[] column = new byte[8];
+        for (int y = 0; y < 16; y += 2) {
+            column[y >> 1] = (byte) (this.getBlockSkyLight(x, y, z) | (this.getBlockSkyLight(x, y + 1, z) << 4));
+        }
+        return column;
+    }
+
+    @Override
+    public byte[] getBlockLightColumn(int x, int z) {
+        byte[] column = new byte[8];
+        for (int y = 0; y < 16; y += 2) {
+            column[y >> 1] = (byte) (this.getBlockLight(x, y, z) | (this.getBlockLight(x, y + 1, z) << 4));
+        }
+        return column;
+    }
+
+    @Override
+    public byte[] getIdArray() {
+        byte[] ids = new byte[4096];
+        if (this.bits == 0) {
+            Arrays.fill(ids, (byte) (this.palette[0] >> 4));
+        } else {
+            for (int i = 0; i < 4096; ++i) {
+                ids[i] = (byte) (this.get(i) >> 4);
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public byte[] getDataArray() {
+        byte[] data = new byte[2048];
+        if (this.bits == 0) {
+            int meta = this.palette[0] & 0x0f;
+            Arrays.fill(data, (byte) ((meta << 4) | meta));
+        } else {
+            for (int i = 0; i < 4096; i += 2) {
+                data[i >> 1] = (byte) ((this.get(i) & 0x0f) | ((this.get(i + 1) & 0x0f) << 4));
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public byte[] getSkyLightArray() {
+        return this.skyLight != null ? this.skyLight.clone() : expandNibbles(this.uniformSkyLight);
+    }
+
+    @Override
+    public byte[] getLightArray() {
+        return this.blockLight != null ? this.blockLight.clone() : expandNibbles(this.uniformBlockLight);
+    }
+
+    @Override
+    public PalettedChunkSection copy() {
+        return new PalettedChunkSection(this);
+    }
+}
@@ -40,11 +40,26 @@ public abstract class BaseChunk extends BaseFullChunk implements Chunk {
     @Override
     public BaseChunk clone() {
         BaseChunk chunk = (BaseChunk) super.clone();
+        chunk.sections = new ChunkSection[SECTION_COUNT];
+        for (int Y = 0; Y < SECTION_COUNT; ++Y) {
+            chunk.sections[Y] = this.sections[Y] != null ? this.sections[Y].copy() : null;
+        }
         chunk.biomeColors = this.getBiomeColorArray().clone();
         chunk.heightMap = this.getHeightMapArray().clone();
         return chunk;
     }
 
+    /**
+     * Creates an empty section in the format of this chunk, used when a block is written into an empty section.
+     */
+    protected ChunkSection createSection(int Y) {
+        try {
+            return (ChunkSection) this.provider.getClass().getMethod("createChunkSection", int.class).invoke(null, Y);
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+            throw new ChunkException("Could not create chunk section " + Y + ": " + e);
+        }
+    }
+
     @Override
     public int getFullBlock(int x, int y, int z) {
         return this.sections[y >> 4].getFullBlock(x, y & 0x0f, z);
@@ -64,15 +79,11 @@ public abstract class BaseChunk extends BaseFullChunk implements Chunk {
     public boolean setBlock(int x, int y, int z, Integer blockId, Integer meta) {
         try {
             this.hasChanged = true;
+            ++this.blockVersion;
             return this.sections[y >> 4].setBlock(x, y & 0x0f, z, blockId & 0xff, meta & 0xff);
         } catch (ChunkException e) {
-            LevelProvider level = this.getProvider();
             int Y = y >> 4;
-            try {
-                this.setInternalSection(Y, (ChunkSection) level.getClass().getMethod("createChunkSection", int.class).invoke(level.getClass(), Y));
-            } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e1) {
-                e1.printStackTrace();
-            }
+            this.setInternalSection(Y, this.createSection(Y));
             return this.sections[y >> 4].setBlock(x, y & 0x0f, z, blockId & 0xff, meta & 0xff);
         }
     }
@@ -87,14 +98,10 @@ public abstract class BaseChunk extends BaseFullChunk implements Chunk {
         try {
             this.sections[y >> 4].setBlockId(x, y & 0x0f, z, id);
             this.hasChanged = true;
+            ++this.blockVersion;
         } catch (ChunkException e) {
-            LevelProvider level = this.getProvider();
             int Y = y >> 4;
-            try {
-                this.setInternalSection(Y, (ChunkSection) provider.getClass().getMethod("createChunkSection", int.class).invoke(provider.getClass(), Y));
-            } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e1) {
-                e1.printStackTrace();
-            }
+            this.setInternalSection(Y, this.createSection(Y));
             this.setBlockId(x, y, z, id);
         }
     }
@@ -109,14 +116,10 @@ public abstract class BaseChunk extends BaseFullChunk implements Chunk {
         try {
             this.sections[y >> 4].setBlockData(x, y & 0x0f, z, data);
             this.hasChanged = true;
+            ++this.blockVersion;
         } catch (ChunkException e) {
-            LevelProvider provider = this.getProvider();
             int Y = y >> 4;
-            try {
-                this.setInternalSection(Y, (ChunkSection) provider.getClass().getMethod("createChunkSection", int.class).invoke(provider.getClass(), Y));
-            } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e1) {
-                e1.printStackTrace();
-            }
+            this.setInternalSection(Y, this.createSection(Y));
             this.setBlockData(x, y, z, data);
         }
     }
@@ -132,13 +135,8 @@ public abstract class BaseChunk extends BaseFullChunk implements Chunk {
             this.sections[y >> 4].setBlockSkyLight(x, y & 0x0f, z, level);
             this.hasChanged = true;
         } catch (ChunkException e) {
-            LevelProvider provider = this.getProvider();
             int Y = y >> 4;
-            try {
-                this.setInternalSection(Y, (ChunkSection) provider.getClass().getMethod("createChunkSection", int.class).invoke(provider.getClass(), Y));
-            } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e1) {
-                e1.printStackTrace();
-            }
+            this.setInternalSection(Y, this.createSection(Y));
             this.setBlockSkyLight(x, y, z, level);
         }
     }
@@ -154,13 +152,8 @@ public abstract class BaseChunk extends BaseFullChunk implements Chunk {
             this.sections[y >> 4].setBlockLight(x, y & 0x0f, z, level);
             this.hasChanged = true;
         } catch (ChunkException e) {
-            LevelProvider provider = this.getProvider();
             int Y = y >> 4;
-            try {
-                this.setInternalSection(Y, (ChunkSection) provider.getClass().getMethod("createChunkSection", int.class).invoke(provider.getClass(), Y));
-            } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e1) {
-                e1.printStackTrace();
-            }
+            this.setInternalSection(Y, this.createSection(Y));
             this.setBlockLight(x, y, z, level);
         }
     }
@@ -223,6 +216,7 @@ public abstract class BaseChunk extends BaseFullChunk implements Chunk {
             this.sections[(int) fY] = section;
         }
         this.hasChanged = true;
+        ++this.blockVersion;
         return true;
     }
 
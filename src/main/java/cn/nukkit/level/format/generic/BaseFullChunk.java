@@ -4,6 +4,7 @@ import cn.nukkit.Player;
 import cn.nukkit.block.Block;
 import cn.nukkit.entity.Entity;
 import cn.nukkit.level.Level;
+import cn.nukkit.level.LightEngine;
 import cn.nukkit.level.format.FullChunk;
 import cn.nukkit.level.format.LevelProvider;
 import cn.nukkit.level.generator.biome.Biome;
@@ -11,6 +12,7 @@ import cn.nukkit.nbt.tag.CompoundTag;
 import cn.nukkit.nbt.tag.DoubleTag;
 import cn.nukkit.nbt.tag.ListTag;
 import cn.nukkit.tile.Tile;
+import cn.nukkit.utils.LongObjectMap;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -22,11 +24,12 @@ import java.util.Map;
  * Nukkit Project
  */
 public abstract class BaseFullChunk implements FullChunk {
-    protected Map<Long, Entity> entities = new HashMap<>();
+    protected LongObjectMap<Entity> entities = new LongObjectMap<>();
 
-    protected Map<Long, Tile> tiles = new HashMap<>();
+    protected LongObjectMap<Tile> tiles = new LongObjectMap<>();
 
-    protected Map<Integer, Tile> tileList = new HashMap<>();
+    //Tiles by position in the chunk, see getTile
+    protected LongObjectMap<Tile> tileList = new LongObjectMap<>();
 
     protected int[] biomeColors;
 
@@ -53,6 +56,9 @@ public abstract class BaseFullChunk implements FullChunk {
 
     protected boolean hasChanged = false;
 
+    //Changed whenever a block of the chunk changes, or the chunk is unloaded or replaced
+    protected int blockVersion = 0;
+
     private boolean isInit = false;
 
     @Override
@@ -248,21 +254,8 @@ public abstract class BaseFullChunk implements FullChunk {
 
     @Override
     public void populateSkyLight() {
-        for (int z = 0; z < 16; ++z) {
-            for (int x = 0; x < 16; ++x) {
-                int top = this.getHeightMap(x, z);
-                for (int y = 127; y > top; --y) {
-                    this.setBlockSkyLight(x, y, z, 15);
-                }
-                for (int y = top; y >= 0; --y) {
-                    if (Block.solid[this.getBlockId(x, y, z)]) {
-                        break;
-                    }
-                    this.setBlockSkyLight(x, y, z, 15);
-                }
-                this.setHeightMap(x, z, this.getHighestBlockAt(x, z, false));
-            }
-        }
+        LightEngine.populateSkyLight(this);
+        this.recalculateHeightMap();
     }
 
     @Override
@@ -307,9 +300,10 @@ public abstract class BaseFullChunk implements FullChunk {
     @Override
     public void addTile(Tile tile) {
         this.tiles.put(tile.getId(), tile);
-        int index = ((tile.z) & 0x0f << 12) | ((this.x & 0x0f) << 8) | (tile.y & 0xff);
-        if (this.tileList.containsKey(index) && !this.tileList.get(index).equals(tile)) {
-            this.tileList.get(index).close();
+        int index = ((tile.z & 0x0f) << 12) | ((tile.x & 0x0f) << 8) | (tile.y & 0xff);
+        Tile old = this.tileList.get(index);
+        if (old != null && !old.equals(tile)) {
+            old.close();
         }
         this.tileList.put(index, tile);
         if (this.isInit) {
@@ -320,8 +314,11 @@ public abstract class BaseFullChunk implements FullChunk {
     @Override
     public void removeTile(Tile tile) {
         this.tiles.remove(tile.getId());
-        int index = ((tile.z) & 0x0f << 12) | ((this.x & 0x0f) << 8) | (tile.y & 0xff);
-        this.tileList.remove(index);
+        int index = ((tile.z & 0x0f) << 12) | ((tile.x & 0x0f) << 8) | (tile.y & 0xff);
+        //A tile that replaced this one keeps its position
+        if (this.tileList.get(index) == tile) {
+            this.tileList.remove(index);
+        }
         if (this.isInit) {
             this.hasChanged = true;
         }
@@ -345,7 +342,7 @@ public abstract class BaseFullChunk implements FullChunk {
     @Override
     public Tile getTile(int x, int y, int z) {
         int index = (z << 12) | (x << 8) | y;
-        return this.tileList.containsKey(index) ? this.tileList.get(index) : null;
+        return this.tileList.get(index);
     }
 
     @Override
@@ -458,6 +455,17 @@ public abstract class BaseFullChunk implements FullChunk {
         this.hasChanged = changed;
     }
 
+    public int getBlockVersion() {
+        return this.blockVersion;
+    }
+
+    /**
+     * Marks the blocks read from this chunk as outdated, used when the chunk leaves the level.
+     */
+    public void invalidateBlocks() {
+        ++this.blockVersion;
+    }
+
     @Override
     public byte[] toFastBinary() {
         return this.toBinary();
@@ -0,0 +1,48 @@
+package cn.nukkit.level.format.generic;
+
+import cn.nukkit.Server;
+import cn.nukkit.level.Level;
+import cn.nukkit.scheduler.AsyncTask;
+import cn.nukkit.tile.Spawnable;
+import cn.nukkit.tile.Tile;
+
+public class ChunkRequestTask extends AsyncTask {
+    protected int levelId;
+
+    protected ChunkSnapshot snapshot;
+    protected int chunkX;
+    protected int chunkZ;
+
+    public ChunkRequestTask(Level level, BaseFullChunk chunk) {
+        this.levelId = level.getId();
+        this.chunkX = chunk.getX();
+        this.chunkZ = chunk.getZ();
+
+        this.snapshot = ChunkSnapshot.obtain(chunk);
+
+        //Tiles keep their encoded spawn data until it changes, so unchanged tiles are not encoded again
+        for (Tile tile : chunk.getTiles().values()) {
+            if (tile instanceof Spawnable) {
+                this.snapshot.addTile(((Spawnable) tile).getSpawnData());
+            }
+        }
+    }
+
+    @Override
+    public void onRun() {
+        try {
+            this.setResult(this.snapshot.encode());
+        } finally {
+            this.snapshot.release();
+            this.snapshot = null;
+        }
+    }
+
+    @Override
+    public void onCompletion(Server server) {
+        Level level = server.getLevel(this.levelId);
+        if (level != null && this.hasResult()) {
+            level.chunkRequestCallback(this.chunkX, this.chunkZ, (byte[]) this.getResult());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package cn.nukkit.level.format.generic;
+
+import cn.nukkit.level.format.Chunk;
+import cn.nukkit.level.format.ChunkSection;
+import cn.nukkit.level.format.anvil.PalettedChunkSection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pooled copy of the arrays of a chunk, so the network payload can be encoded on a worker.
+ */
+public class ChunkSnapshot {
+
+    public static final int LAYOUT_COLUMNS = 0;
+    public static final int LAYOUT_SECTIONS = 1;
+
+    private static final int MAX_POOL_SIZE = 16;
+
+    private static final Queue<ChunkSnapshot> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger poolSize = new AtomicInteger();
+
+    private final byte[] ids = new byte[32768];
+    private final byte[] data = new byte[16384];
+    private final byte[] skyLight = new byte[16384];
+    private final byte[] blockLight = new byte[16384];
+    private final byte[] heightMap = new byte[256];
+    private final int[] biomeColors = new int[256];
+
+    private int chunkX;
+    private int chunkZ;
+    private int layout;
+
+    private byte[] extraData;
+    private final List<byte[]> tiles = new ArrayList<>();
+    private int tilesLength = 0;
+
+    private ChunkSnapshot() {
+
+    }
+
+    public static ChunkSnapshot obtain(BaseFullChunk chunk) {
+        ChunkSnapshot snapshot = pool.poll();
+        if (snapshot != null) {
+            poolSize.decrementAndGet();
+        } else {
+            snapshot = new ChunkSnapshot();
+        }
+        snapshot.copy(chunk);
+        return snapshot;
+    }
+
+    /**
+     * Adds the little endian encoded spawn compound of a tile to the payload. The array must not change afterwards.
+     */
+    public void addTile(byte[] data) {
+        this.tiles.add(data);
+        this.tilesLength += data.length;
+    }
+
+    private void copy(BaseFullChunk chunk) {
+        this.chunkX = chunk.getX();
+        this.chunkZ = chunk.getZ();
+
+        if (chunk instanceof Chunk) {
+            this.layout = LAYOUT_SECTIONS;
+            ChunkSection[] sections = ((Chunk) chunk).getSections();
+            for (int Y = 0; Y < Chunk.SECTION_COUNT; ++Y) {
+                ChunkSection section = sections[Y];
+                int idOffset = Y << 12;
+                int nibbleOffset = Y << 11;
+                if (section instanceof EmptyChunkSection) {
+                    Arrays.fill(this.ids, idOffset, idOffset + 4096, (byte) 0);
+                    Arrays.fill(this.data, nibbleOffset, nibbleOffset + 2048, (byte) 0);
+                    Arrays.fill(this.skyLight, nibbleOffset, nibbleOffset + 2048, (byte) 0xff);
+                    Arrays.fill(this.blockLight, nibbleOffset, nibbleOffset + 2048, (byte) 0);
+                } else if (section instanceof PalettedChunkSection) {
+                    ((PalettedChunkSection) section).copyTo(this.ids, idOffset, this.data, this.skyLight, this.blockLight, nibbleOffset);
+                } else {
+                    System.arraycopy(section.getIdArray(), 0, this.ids, idOffset, 4096);
+                    System.arraycopy(section.getDataArray(), 0, this.data, nibbleOffset, 2048);
+                    System.arraycopy(section.getSkyLightArray(), 0, this.skyLight, nibbleOffset, 2048);
+                    System.arraycopy(section.getLightArray(), 0, this.blockLight, nibbleOffset, 2048);
+                }
+            }
+        } else {
+            this.layout = LAYOUT_COLUMNS;
+            System.arraycopy(chunk.getBlockIdArray(), 0, this.ids, 0, 32768);
+            System.arraycopy(chunk.getBlockDataArray(), 0, this.data, 0, 16384);
+            System.arraycopy(chunk.getBlockSkyLightArray(), 0, this.skyLight, 0, 16384);
+            System.arraycopy(chunk.getBlockLightArray(), 0, this.blockLight, 0, 16384);
+        }
+
+        int[] heightMap = chunk.getHeightMapArray();
+        for (int i = 0; i < 256; ++i) {
+            this.heightMap[i] = (byte) heightMap[i];
+        }
+        System.arraycopy(chunk.getBiomeColorArray(), 0, this.biomeColors, 0, 256);
+
+        Map<Integer, Integer> extraData = chunk.getBlockExtraDataArray();
+        byte[] extra = new byte[4 + extraData.size() * 6];
+        int offset = writeLInt(extra, 0, extraData.size());
+        for (Map.Entry<Integer, Integer> entry : extraData.entrySet()) {
+            offset = writeLInt(extra, offset, entry.getKey());
+            extra[offset++] = (byte) (int) entry.getValue();
+            extra[offset++] = (byte) (entry.getValue() >>> 8);
+        }
+        this.extraData = extra;
+    }
+
+    private static int writeLInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+        buffer[offset + 2] = (byte) (value >>> 16);
+        buffer[offset + 3] = (byte) (value >>> 24);
+        return offset + 4;
+    }
+
+    public int getChunkX() {
+        return this.chunkX;
+    }
+
+    public int getChunkZ() {
+        return this.chunkZ;
+    }
+
+    /**
+     * Writes the column ordered chunk payload: ids, data, sky light, block light, height map, biome colors,
+     * extra data and tiles.
+     */
+    public byte[] encode() {
+        byte[] payload = new byte[32768 + 16384 * 3 + 256 + 1024 + this.extraData.length + this.tilesLength];
+
+        if (this.layout == LAYOUT_COLUMNS) {
+            System.arraycopy(this.ids, 0, payload, 0, 32768);
+            System.arraycopy(this.data, 0, payload, 32768, 16384);
+            System.arraycopy(this.skyLight, 0, payload, 49152, 16384);
+            System.arraycopy(this.blockLight, 0, payload, 65536, 16384);
+        } else {
+            int offset = 0;
+            for (int x = 0; x < 16; ++x) {
+                for (int z = 0; z < 16; ++z) {
+                    int i = (z << 4) | x;
+                    for (int y = 0; y < 128; ++y) {
+                        payload[offset++] = this.ids[(y << 8) | i];
+                    }
+                }
+            }
+            reorderNibbles(this.data, payload, 32768);
+            reorderNibbles(this.skyLight, payload, 49152);
+            reorderNibbles(this.blockLight, payload, 65536);
+        }
+
+        int offset = 81920;
+        System.arraycopy(this.heightMap, 0, payload, offset, 256);
+        offset += 256;
+        for (int color : this.biomeColors) {
+            payload[offset++] = (byte) (color >>> 24);
+            payload[offset++] = (byte) (color >>> 16);
+            payload[offset++] = (byte) (color >>> 8);
+            payload[offset++] = (byte) color;
+        }
+        System.arraycopy(this.extraData, 0, payload, offset, this.extraData.length);
+        offset += this.extraData.length;
+        for (byte[] tile : this.tiles) {
+            System.arraycopy(tile, 0, payload, offset, tile.length);
+            offset += tile.length;
+        }
+
+        return payload;
+    }
+
+    private static void reorderNibbles(byte[] source, byte[] payload, int offset) {
+        for (int x = 0; x < 16; ++x) {
+            int i = (x >> 1);
+            int shift = (x & 1) << 2;
+            for (int z = 0; z < 16; ++z) {
+                int j = (z << 3) | i;
+                for (int y = 0; y < 128; y += 2) {
+                    int low = (source[(y << 7) | j] >> shift) & 0x0f;
+                    int high = (source[((y + 1) << 7) | j] >> shift) & 0x0f;
+                    payload[offset++] = (byte) (low | (high << 4));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the buffers to the pool. The snapshot must not be used afterwards.
+     */
+    public void release() {
+        this.extraData = null;
+        this.tiles.clear();
+        this.tilesLength = 0;
+        if (poolSize.incrementAndGet() <= MAX_POOL_SIZE) {
+            pool.offer(this);
+        } else {
+            poolSize.decrementAndGet();
+        }
+    }
+}
@@ -131,6 +131,7 @@ public class Chunk extends BaseFullChunk {
     public void setBlockId(int x, int y, int z, int id) {
         this.blocks[(x << 11) | (z << 7) | y] = (byte) (id & 0xff);
         this.hasChanged = true;
+        ++this.blockVersion;
     }
 
     @Override
@@ -153,6 +154,7 @@ public class Chunk extends BaseFullChunk {
             this.data[i] = (byte) ((((data & 0x0f) << 4) | (old & 0x0f)) & 0xff);
         }
         this.hasChanged = true;
+        ++this.blockVersion;
     }
 
     @Override
@@ -207,6 +209,7 @@ public class Chunk extends BaseFullChunk {
 
         if (changed) {
             this.hasChanged = true;
+            ++this.blockVersion;
         }
         return changed;
     }
@@ -33,27 +33,21 @@ public class GenerationTask extends AsyncTask {
             return;
         }
 
-        synchronized (manager) {
-            synchronized (generator) {
-                BaseFullChunk chunk = this.chunk.clone();
+        BaseFullChunk chunk = this.chunk.clone();
 
-                if (chunk == null) {
-                    return;
-                }
-
-                manager.setChunk(chunk.getX(), chunk.getZ(), chunk);
-
-                generator.generateChunk(chunk.getX(), chunk.getZ());
+        if (chunk == null) {
+            return;
+        }
 
-                chunk = manager.getChunk(chunk.getX(), chunk.getZ());
-                chunk.setGenerated();
-                this.chunk = chunk.clone();
+        manager.setChunk(chunk.getX(), chunk.getZ(), chunk);
 
-                manager.setChunk(chunk.getX(), chunk.getZ(), null);
-            }
-        }
+        generator.generateChunk(chunk.getX(), chunk.getZ());
 
+        chunk = manager.getChunk(chunk.getX(), chunk.getZ());
+        chunk.setGenerated();
+        this.chunk = chunk.clone();
 
+        manager.setChunk(chunk.getX(), chunk.getZ(), null);
     }
 
     @Override
@@ -63,7 +63,7 @@ public abstract class Generator {
         for (int xx = 0; xx < xSize; ++xx) {
             if (xx % samplingRate != 0) {
                 int nx = xx / samplingRate * samplingRate;
-                noiseArray[nx] = Noise.linearLerp(xx, nx, nx + samplingRate, noiseArray[nx], noiseArray[nx + samplingRate]);
+                noiseArray[xx] = Noise.linearLerp(xx, nx, nx + samplingRate, noiseArray[nx], noiseArray[nx + samplingRate]);
             }
         }
 
@@ -151,18 +151,18 @@ public abstract class Generator {
                         int nny = ny + ySamplingRate;
                         int nnz = nz + zSamplingRate;
 
-                        int dx1 = ((nnx - xx) / (nnx - nx));
-                        int dx2 = ((xx - nx) / (nnx - nx));
-                        int dy1 = ((nny - yy) / (nny - ny));
-                        int dy2 = ((yy - ny) / (nny - ny));
+                        double dx1 = (double) (nnx - xx) / (nnx - nx);
+                        double dx2 = (double) (xx - nx) / (nnx - nx);
+                        double dy1 = (double) (nny - yy) / (nny - ny);
+                        double dy2 = (double) (yy - ny) / (nny - ny);
 
-                        noiseArray[xx][zz][yy] = ((nnz - zz) / (nnz - nz)) * (
+                        noiseArray[xx][zz][yy] = ((double) (nnz - zz) / (nnz - nz)) * (
                                 dy1 * (
                                         dx1 * noiseArray[nx][nz][ny] + dx2 * noiseArray[nnx][nz][ny]
                                 ) + dy2 * (
                                         dx1 * noiseArray[nx][nz][nny] + dx2 * noiseArray[nnx][nz][nny]
                                 )
-                        ) + ((zz - nz) / (nnz - nz)) * (
+                        ) + ((double) (zz - nz) / (nnz - nz)) * (
                                 dy1 * (
                                         dx1 * noiseArray[nx][nnz][ny] + dx2 * noiseArray[nnx][nnz][ny]
                                 ) + dy2 * (
@@ -177,6 +177,93 @@ public abstract class Generator {
         return noiseArray;
     }
 
+    /**
+     * Samples normalized 3D noise on a coarse grid and fills the points in between by trilinear interpolation.
+     * <p>
+     * The result is a flat array indexed by {@code (xx * (zSize + 1) + zz) * (ySize + 1) + yy}. If the given buffer is
+     * large enough it is filled and returned, so callers generating many chunks can reuse one array. The samples are
+     * taken with {@link Noise#fillNoise3D} into the given samples array, which must hold
+     * {@code (xSize / xSamplingRate + 1) * (ySize / ySamplingRate + 1) * (zSize / zSamplingRate + 1)} values.
+     */
+    public static double[] getFastNoise3D(Noise noise, double[] buffer, double[] samples, int xSize, int ySize, int zSize, int xSamplingRate, int ySamplingRate, int zSamplingRate, int x, int y, int z) {
+        if (xSamplingRate <= 0 || ySamplingRate <= 0 || zSamplingRate <= 0) {
+            throw new IllegalArgumentException("Sampling rates must be positive");
+        }
+        if (xSize % xSamplingRate != 0 || ySize % ySamplingRate != 0 || zSize % zSamplingRate != 0) {
+            throw new IllegalArgumentException("Sizes must be multiples of their sampling rates");
+        }
+
+        int zStride = ySize + 1;
+        int xStride = (zSize + 1) * zStride;
+        int length = (xSize + 1) * xStride;
+        if (buffer == null || buffer.length < length) {
+            buffer = new double[length];
+        }
+
+        int xSamples = xSize / xSamplingRate + 1;
+        int ySamples = ySize / ySamplingRate + 1;
+        int zSamples = zSize / zSamplingRate + 1;
+        if (samples.length < xSamples * ySamples * zSamples) {
+            throw new IllegalArgumentException("Samples array is too small");
+        }
+        noise.fillNoise3D(samples, x, y, z, xSamples, ySamples, zSamples, xSamplingRate, ySamplingRate, zSamplingRate, true);
+        int i = 0;
+        for (int xx = 0; xx <= xSize; xx += xSamplingRate) {
+            for (int zz = 0; zz <= zSize; zz += zSamplingRate) {
+                int column = xx * xStride + zz * zStride;
+                for (int yy = 0; yy <= ySize; yy += ySamplingRate) {
+                    buffer[column + yy] = samples[i++];
+                }
+            }
+        }
+
+        double xScale = 1d / xSamplingRate;
+        double yScale = 1d / ySamplingRate;
+        double zScale = 1d / zSamplingRate;
+
+        for (int nx = 0; nx < xSize; nx += xSamplingRate) {
+            int nnx = nx + xSamplingRate;
+            int xEnd = nnx == xSize ? xSamplingRate : xSamplingRate - 1;
+            for (int nz = 0; nz < zSize; nz += zSamplingRate) {
+                int nnz = nz + zSamplingRate;
+                int zEnd = nnz == zSize ? zSamplingRate : zSamplingRate - 1;
+                for (int ny = 0; ny < ySize; ny += ySamplingRate) {
+                    int nny = ny + ySamplingRate;
+                    int yEnd = nny == ySize ? ySamplingRate : ySamplingRate - 1;
+
+                    double q000 = buffer[nx * xStride + nz * zStride + ny];
+                    double q001 = buffer[nx * xStride + nz * zStride + nny];
+                    double q010 = buffer[nx * xStride + nnz * zStride + ny];
+                    double q011 = buffer[nx * xStride + nnz * zStride + nny];
+                    double q100 = buffer[nnx * xStride + nz * zStride + ny];
+                    double q101 = buffer[nnx * xStride + nz * zStride + nny];
+                    double q110 = buffer[nnx * xStride + nnz * zStride + ny];
+                    double q111 = buffer[nnx * xStride + nnz * zStride + nny];
+
+                    for (int dx = 0; dx <= xEnd; ++dx) {
+                        double tx = dx * xScale;
+                        double q00 = q000 * (1 - tx) + q100 * tx;
+                        double q01 = q001 * (1 - tx) + q101 * tx;
+                        double q10 = q010 * (1 - tx) + q110 * tx;
+                        double q11 = q011 * (1 - tx) + q111 * tx;
+                        for (int dz = 0; dz <= zEnd; ++dz) {
+                            double tz = dz * zScale;
+                            double q0 = q00 * (1 - tz) + q10 * tz;
+                            double q1 = q01 * (1 - tz) + q11 * tz;
+                            int column = (nx + dx) * xStride + (nz + dz) * zStride + ny;
+                            for (int dy = 0; dy <= yEnd; ++dy) {
+                                double ty = dy * yScale;
+                                buffer[column + dy] = q0 * (1 - ty) + q1 * ty;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return buffer;
+    }
+
     public abstract void init(ChunkManager level, Random random);
 
     public abstract void generateChunk(int chunkX, int chunkZ);
@@ -4,25 +4,29 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Generator instances of the generation workers, keyed by level.
+ * <p>
+ * Every worker thread registers its own instance, so chunks of the same level can be generated in parallel.
+ *
  * author: MagicDroidX
  * Nukkit Project
  */
 public class GeneratorPool {
-    private static Map<Integer, Generator> generators = new HashMap<>();
+    private static final ThreadLocal<Map<Integer, Generator>> generators = ThreadLocal.withInitial(HashMap::new);
 
     public static void put(int levelId, Generator generator) {
-        generators.put(levelId, generator);
+        generators.get().put(levelId, generator);
     }
 
     public static void remove(int levelId) {
-        generators.remove(levelId);
+        generators.get().remove(levelId);
     }
 
     public static boolean exists(int levelId) {
-        return generators.containsKey(levelId);
+        return generators.get().containsKey(levelId);
     }
 
     public static Generator get(int levelId) {
-        return generators.getOrDefault(levelId, null);
+        return generators.get().getOrDefault(levelId, null);
     }
 }
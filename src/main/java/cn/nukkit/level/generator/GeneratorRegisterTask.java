@@ -30,8 +30,10 @@ public class GeneratorRegisterTask extends AsyncTask {
 
     @Override
     public void onRun() {
-        Block.init();
-        Biome.init();
+        synchronized (GeneratorRegisterTask.class) {
+            Block.init();
+            Biome.init();
+        }
         SimpleChunkManager manager = new SimpleChunkManager(this.seed);
         ChunkManagerPool.put(this.levelId, manager);
         try {
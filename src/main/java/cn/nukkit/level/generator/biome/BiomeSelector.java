@@ -21,19 +21,51 @@ public class BiomeSelector {
 
     public BiomeSelector(Random random, Biome fallback) {
         this.fallback = fallback;
-        this.temperature = new Simplex(random, 2, 1 / 16, 1 / 512);
-        this.rainfall = new Simplex(random, 2, 1 / 16, 1 / 512);
+        this.temperature = new Simplex(random, 2, 1d / 16, 1d / 512);
+        this.rainfall = new Simplex(random, 2, 1d / 16, 1d / 512);
     }
 
-    public int lookup(double... args) {
-        return 0;
+    public int lookup(double temperature, double rainfall) {
+        if (rainfall < 0.25) {
+            if (temperature < 0.7) {
+                return Biome.OCEAN;
+            } else if (temperature < 0.85) {
+                return Biome.RIVER;
+            } else {
+                return Biome.SWAMP;
+            }
+        } else if (rainfall < 0.60) {
+            if (temperature < 0.25) {
+                return Biome.ICE_PLAINS;
+            } else if (temperature < 0.75) {
+                return Biome.PLAINS;
+            } else {
+                return Biome.DESERT;
+            }
+        } else if (rainfall < 0.80) {
+            if (temperature < 0.25) {
+                return Biome.TAIGA;
+            } else if (temperature < 0.75) {
+                return Biome.FOREST;
+            } else {
+                return Biome.BIRCH_FOREST;
+            }
+        } else {
+            if (temperature < 0.25) {
+                return Biome.MOUNTAINS;
+            } else if (temperature < 0.70) {
+                return Biome.SMALL_MOUNTAINS;
+            } else {
+                return Biome.RIVER;
+            }
+        }
     }
 
     public void recalculate() {
         this.map = new int[64 * 64];
         for (int i = 0; i < 64; ++i) {
             for (int j = 0; j < 64; ++j) {
-                this.map[i + (j << 6)] = this.lookup(i / 63, j / 63);
+                this.map[i + (j << 6)] = this.lookup(i / 63d, j / 63d);
             }
         }
     }
@@ -50,10 +82,34 @@ public class BiomeSelector {
         return (this.rainfall.noise2D(x, z, true) + 1) / 2;
     }
 
+    /**
+     * Fills the temperatures of a grid of blocks starting at (x, z), indexed by {@code xx * zSize + zz}.
+     */
+    public double[] getTemperatures(double[] buffer, int x, int z, int xSize, int zSize) {
+        return fillClimate(this.temperature, buffer, x, z, xSize, zSize);
+    }
+
+    /**
+     * Fills the rainfall of a grid of blocks starting at (x, z), indexed by {@code xx * zSize + zz}.
+     */
+    public double[] getRainfalls(double[] buffer, int x, int z, int xSize, int zSize) {
+        return fillClimate(this.rainfall, buffer, x, z, xSize, zSize);
+    }
+
+    private static double[] fillClimate(Simplex noise, double[] buffer, int x, int z, int xSize, int zSize) {
+        buffer = noise.fillNoise2D(buffer, x, z, xSize, zSize, 1, 1, true);
+        for (int i = 0; i < xSize * zSize; ++i) {
+            buffer[i] = (buffer[i] + 1) / 2;
+        }
+        return buffer;
+    }
+
     public Biome pickBiome(double x, double z) {
-        int temperature = (int) (this.getTemperature(x, z) * 63);
-        int rainfall = (int) (this.getRainfall(x, z) * 63);
-        int biomeId = this.map[temperature + (rainfall << 6)];
+        return this.lookupBiome(this.getTemperature(x, z), this.getRainfall(x, z));
+    }
+
+    public Biome lookupBiome(double temperature, double rainfall) {
+        int biomeId = this.map[(int) (temperature * 63) + ((int) (rainfall * 63) << 6)];
         return this.biomes.containsKey(biomeId) ? this.biomes.get(biomeId) : this.fallback;
     }
 
@@ -129,6 +129,104 @@ public abstract class Noise {
         return result;
     }
 
+    /**
+     * Fills a grid of {@link #noise2D} values, starting at (x, z) and advancing by the given steps.
+     * <p>
+     * The result is indexed by {@code xx * zSize + zz}. The scaled x coordinate of every octave is computed once per
+     * row. The buffer is reused if it is large enough.
+     */
+    public double[] fillNoise2D(double[] buffer, double x, double z, int xSize, int zSize, double xStep, double zStep, boolean normalized) {
+        int length = xSize * zSize;
+        if (buffer == null || buffer.length < length) {
+            buffer = new double[length];
+        }
+
+        int octaves = (int) Math.ceil(this.octaves);
+        double[] frequencies = new double[octaves];
+        double[] amplitudes = new double[octaves];
+        double max = this.getOctaves(frequencies, amplitudes);
+        double scale = normalized ? 1 / max : 1;
+        double[] rowX = new double[octaves];
+
+        int i = 0;
+        for (int xx = 0; xx < xSize; ++xx) {
+            double nx = x + xx * xStep;
+            for (int o = 0; o < octaves; ++o) {
+                rowX[o] = nx * frequencies[o];
+            }
+            for (int zz = 0; zz < zSize; ++zz) {
+                double nz = z + zz * zStep;
+                double result = 0;
+                for (int o = 0; o < octaves; ++o) {
+                    result += this.getNoise2D(rowX[o], nz * frequencies[o]) * amplitudes[o];
+                }
+                buffer[i++] = result * scale;
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Fills a grid of {@link #noise3D} values, starting at (x, y, z) and advancing by the given steps.
+     * <p>
+     * The result is indexed by {@code (xx * zSize + zz) * ySize + yy}, the column order used by the chunk generators.
+     * The scaled x and z coordinates of every octave are computed once per column.
+     */
+    public double[] fillNoise3D(double[] buffer, double x, double y, double z, int xSize, int ySize, int zSize, double xStep, double yStep, double zStep, boolean normalized) {
+        int length = xSize * ySize * zSize;
+        if (buffer == null || buffer.length < length) {
+            buffer = new double[length];
+        }
+
+        int octaves = (int) Math.ceil(this.octaves);
+        double[] frequencies = new double[octaves];
+        double[] amplitudes = new double[octaves];
+        double max = this.getOctaves(frequencies, amplitudes);
+        double scale = normalized ? 1 / max : 1;
+        double[] columnX = new double[octaves];
+        double[] columnZ = new double[octaves];
+
+        int i = 0;
+        for (int xx = 0; xx < xSize; ++xx) {
+            double nx = x + xx * xStep;
+            for (int zz = 0; zz < zSize; ++zz) {
+                double nz = z + zz * zStep;
+                for (int o = 0; o < octaves; ++o) {
+                    columnX[o] = nx * frequencies[o];
+                    columnZ[o] = nz * frequencies[o];
+                }
+                for (int yy = 0; yy < ySize; ++yy) {
+                    double ny = y + yy * yStep;
+                    double result = 0;
+                    for (int o = 0; o < octaves; ++o) {
+                        result += this.getNoise3D(columnX[o], ny * frequencies[o], columnZ[o]) * amplitudes[o];
+                    }
+                    buffer[i++] = result * scale;
+                }
+            }
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Fills the frequency, expansion included, and the amplitude of every octave, and returns the sum of the amplitudes.
+     */
+    private double getOctaves(double[] frequencies, double[] amplitudes) {
+        double amp = 1;
+        double freq = this.expansion;
+        double max = 0;
+        for (int i = 0; i < frequencies.length; ++i) {
+            frequencies[i] = freq;
+            amplitudes[i] = amp;
+            max += amp;
+            freq *= 2;
+            amp *= this.persistence;
+        }
+        return max;
+    }
+
     public void setOffset(double x, double y, double z) {
         this.offsetX = x;
         this.offsetY = y;
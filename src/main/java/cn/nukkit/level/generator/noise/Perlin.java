@@ -44,13 +44,13 @@ public class Perlin extends Noise {
 
     @Override
     public double getNoise3D(double x, double y, double z) {
-        x += this.offsetX;
-        y += this.offsetY;
-        z += this.offsetZ;
+        return this.perlin3D(x + this.offsetX, y + this.offsetY, z + this.offsetZ);
+    }
 
-        int floorX = (int) x;
-        int floorY = (int) y;
-        int floorZ = (int) z;
+    private double perlin3D(double x, double y, double z) {
+        int floorX = floor(x);
+        int floorY = floor(y);
+        int floorZ = floor(z);
 
         int X = floorX & 0xFF;
         int Y = floorY & 0xFF;
@@ -7,18 +7,18 @@ import java.util.Random;
  * Nukkit Project
  */
 public class Simplex extends Perlin {
-    protected static double SQRT_3;
-    protected static double SQRT_5;
-    protected static double F2;
-    protected static double G2;
-    protected static double G22;
-    protected static double F3;
-    protected static double G3;
-    protected static double F4;
-    protected static double G4;
-    protected static double G42;
-    protected static double G43;
-    protected static double G44;
+    protected static final double SQRT_3;
+    protected static final double SQRT_5;
+    protected static final double F2;
+    protected static final double G2;
+    protected static final double G22;
+    protected static final double F3;
+    protected static final double G3;
+    protected static final double F4;
+    protected static final double G4;
+    protected static final double G42;
+    protected static final double G43;
+    protected static final double G44;
     protected static int[][] grad4 = {{0, 1, 1, 1}, {0, 1, 1, -1}, {0, 1, -1, 1}, {0, 1, -1, -1},
             {0, -1, 1, 1}, {0, -1, 1, -1}, {0, -1, -1, 1}, {0, -1, -1, -1},
             {1, 0, 1, 1}, {1, 0, 1, -1}, {1, 0, -1, 1}, {1, 0, -1, -1},
@@ -38,12 +38,45 @@ public class Simplex extends Perlin {
             {2, 1, 0, 3}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {3, 1, 0, 2}, {0, 0, 0, 0}, {3, 2, 0, 1}, {3, 2, 1, 0}};
     protected double offsetW;
 
+    //Components of Perlin.grad3 as flat arrays
+    private static final double[] GRAD_X = new double[12];
+    private static final double[] GRAD_Y = new double[12];
+    private static final double[] GRAD_Z = new double[12];
+
+    //perm[i] % 12, so the gradient lookups of every corner skip the modulo
+    protected int[] permMod12;
+
+    static {
+        SQRT_3 = Math.sqrt(3);
+        SQRT_5 = Math.sqrt(5);
+        F2 = 0.5 * (SQRT_3 - 1);
+        G2 = (3 - SQRT_3) / 6;
+        G22 = G2 * 2.0 - 1;
+        F3 = 1.0 / 3.0;
+        G3 = 1.0 / 6.0;
+        F4 = (SQRT_5 - 1.0) / 4.0;
+        G4 = (5.0 - SQRT_5) / 20.0;
+        G42 = G4 * 2.0;
+        G43 = G4 * 3.0;
+        G44 = G4 * 4.0 - 1.0;
+
+        for (int i = 0; i < 12; ++i) {
+            GRAD_X[i] = grad3[i][0];
+            GRAD_Y[i] = grad3[i][1];
+            GRAD_Z[i] = grad3[i][2];
+        }
+    }
+
     public Simplex(Random random, double octaves, double persistence) {
-        super(random, octaves, persistence);
+        this(random, octaves, persistence, 1);
     }
 
     public Simplex(Random random, double octaves, double persistence, double expansion) {
         super(random, octaves, persistence, expansion);
+        this.permMod12 = new int[512];
+        for (int i = 0; i < 512; ++i) {
+            this.permMod12[i] = this.perm[i] % 12;
+        }
     }
 
 
@@ -61,15 +94,15 @@ public class Simplex extends Perlin {
 
     @Override
     public double getNoise3D(double x, double y, double z) {
-        x += this.offsetX;
-        y += this.offsetY;
-        z += this.offsetZ;
+        return this.simplex3D(x + this.offsetX, y + this.offsetY, z + this.offsetZ);
+    }
 
+    private double simplex3D(double x, double y, double z) {
         // Skew the input space to determine which simplex cell we're in
         double s = (x + y + z) * F3; // Very nice and simple skew factor for 3D
-        int i = (int) (x + s);
-        int j = (int) (y + s);
-        int k = (int) (z + s);
+        int i = floor(x + s);
+        int j = floor(y + s);
+        int k = floor(z + s);
         double t = (i + j + k) * G3;
         // Unskew the cell origin back to (x,y,z) space
         double x0 = x - (i - t); // The x,y,z distances from the cell origin
@@ -163,26 +196,26 @@ public class Simplex extends Perlin {
         // Calculate the contribution from the four corners
         double t0 = 0.6 - x0 * x0 - y0 * y0 - z0 * z0;
         if (t0 > 0) {
-            int[] gi0 = grad3[this.perm[ii + this.perm[jj + this.perm[kk]]] % 12];
-            n += t0 * t0 * t0 * t0 * (gi0[0] * x0 + gi0[1] * y0 + gi0[2] * z0);
+            int g0 = this.permMod12[ii + this.perm[jj + this.perm[kk]]];
+            n += t0 * t0 * t0 * t0 * (GRAD_X[g0] * x0 + GRAD_Y[g0] * y0 + GRAD_Z[g0] * z0);
         }
 
         double t1 = 0.6 - x1 * x1 - y1 * y1 - z1 * z1;
         if (t1 > 0) {
-            int[] gi1 = grad3[this.perm[ii + i1 + this.perm[jj + j1 + this.perm[kk + k1]]] % 12];
-            n += t1 * t1 * t1 * t1 * (gi1[0] * x1 + gi1[1] * y1 + gi1[2] * z1);
+            int g1 = this.permMod12[ii + i1 + this.perm[jj + j1 + this.perm[kk + k1]]];
+            n += t1 * t1 * t1 * t1 * (GRAD_X[g1] * x1 + GRAD_Y[g1] * y1 + GRAD_Z[g1] * z1);
         }
 
         double t2 = 0.6 - x2 * x2 - y2 * y2 - z2 * z2;
         if (t2 > 0) {
-            int[] gi2 = grad3[this.perm[ii + i2 + this.perm[jj + j2 + this.perm[kk + k2]]] % 12];
-            n += t2 * t2 * t2 * t2 * (gi2[0] * x2 + gi2[1] * y2 + gi2[2] * z2);
+            int g2 = this.permMod12[ii + i2 + this.perm[jj + j2 + this.perm[kk + k2]]];
+            n += t2 * t2 * t2 * t2 * (GRAD_X[g2] * x2 + GRAD_Y[g2] * y2 + GRAD_Z[g2] * z2);
         }
 
         double t3 = 0.6 - x3 * x3 - y3 * y3 - z3 * z3;
         if (t3 > 0) {
-            int[] gi3 = grad3[this.perm[ii + 1 + this.perm[jj + 1 + this.perm[kk + 1]]] % 12];
-            n += t3 * t3 * t3 * t3 * (gi3[0] * x3 + gi3[1] * y3 + gi3[2] * z3);
+            int g3 = this.permMod12[ii + 1 + this.perm[jj + 1 + this.perm[kk + 1]]];
+            n += t3 * t3 * t3 * t3 * (GRAD_X[g3] * x3 + GRAD_Y[g3] * y3 + GRAD_Z[g3] * z3);
         }
 
         // Add contributions from each corner to get the noise value.
@@ -192,13 +225,14 @@ public class Simplex extends Perlin {
 
     @Override
     public double getNoise2D(double x, double y) {
-        x += this.offsetX;
-        y += this.offsetY;
+        return this.simplex2D(x + this.offsetX, y + this.offsetY);
+    }
 
+    private double simplex2D(double x, double y) {
         // Skew the input space to determine which simplex cell we're in
         double s = (x + y) * F2; // Hairy factor for 2D
-        int i = (int) (x + s);
-        int j = (int) (y + s);
+        int i = floor(x + s);
+        int j = floor(y + s);
         double t = (i + j) * G2;
         // Unskew the cell origin back to (x,y) space
         double x0 = x - (i - t); // The x,y distances from the cell origin
@@ -236,20 +270,20 @@ public class Simplex extends Perlin {
         // Calculate the contribution from the three corners
         double t0 = 0.5 - x0 * x0 - y0 * y0;
         if (t0 > 0) {
-            int[] gi0 = grad3[this.perm[ii + this.perm[jj]] % 12];
-            n += t0 * t0 * t0 * t0 * (gi0[0] * x0 + gi0[1] * y0); // (x,y) of grad3 used for 2D gradient
+            int g0 = this.permMod12[ii + this.perm[jj]];
+            n += t0 * t0 * t0 * t0 * (GRAD_X[g0] * x0 + GRAD_Y[g0] * y0); // (x,y) of grad3 used for 2D gradient
         }
 
         double t1 = 0.5 - x1 * x1 - y1 * y1;
         if (t1 > 0) {
-            int[] gi1 = grad3[this.perm[ii + i1 + this.perm[jj + j1]] % 12];
-            n += t1 * t1 * t1 * t1 * (gi1[0] * x1 + gi1[1] * y1);
+            int g1 = this.permMod12[ii + i1 + this.perm[jj + j1]];
+            n += t1 * t1 * t1 * t1 * (GRAD_X[g1] * x1 + GRAD_Y[g1] * y1);
         }
 
         double t2 = 0.5 - x2 * x2 - y2 * y2;
         if (t2 > 0) {
-            int[] gi2 = grad3[this.perm[ii + 1 + this.perm[jj + 1]] % 12];
-            n += t2 * t2 * t2 * t2 * (gi2[0] * x2 + gi2[1] * y2);
+            int g2 = this.permMod12[ii + 1 + this.perm[jj + 1]];
+            n += t2 * t2 * t2 * t2 * (GRAD_X[g2] * x2 + GRAD_Y[g2] * y2);
         }
 
         // Add contributions from each corner to get the noise value.
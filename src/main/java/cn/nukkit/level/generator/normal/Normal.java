@@ -1,10 +1,21 @@
 package cn.nukkit.level.generator.normal;
 
+import cn.nukkit.block.*;
 import cn.nukkit.level.ChunkManager;
+import cn.nukkit.level.format.generic.BaseFullChunk;
 import cn.nukkit.level.generator.Generator;
+import cn.nukkit.level.generator.biome.Biome;
+import cn.nukkit.level.generator.biome.BiomeSelector;
+import cn.nukkit.level.generator.noise.Simplex;
+import cn.nukkit.level.generator.object.OreType;
+import cn.nukkit.level.generator.populator.Populator;
+import cn.nukkit.level.generator.populator.PopulatorGroundCover;
+import cn.nukkit.level.generator.populator.PopulatorOre;
 import cn.nukkit.math.Vector3;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
@@ -14,15 +25,59 @@ import java.util.Random;
  */
 public class Normal extends Generator {
 
+    private static final int SMOOTH_SIZE = 2;
+    private static final int SMOOTH_WIDTH = SMOOTH_SIZE * 2 + 1;
+
+    private static final double[] GAUSSIAN_KERNEL = new double[SMOOTH_WIDTH * SMOOTH_WIDTH];
+
+    static {
+        double bellSize = 1d / SMOOTH_SIZE;
+        double bellHeight = 2 * SMOOTH_SIZE;
+        for (int sx = -SMOOTH_SIZE; sx <= SMOOTH_SIZE; ++sx) {
+            for (int sz = -SMOOTH_SIZE; sz <= SMOOTH_SIZE; ++sz) {
+                double bx = bellSize * sx;
+                double bz = bellSize * sz;
+                GAUSSIAN_KERNEL[(sx + SMOOTH_SIZE) * SMOOTH_WIDTH + sz + SMOOTH_SIZE] = bellHeight * Math.exp(-(bx * bx + bz * bz) / 2);
+            }
+        }
+    }
+
+    //Size of the biome area needed to smooth the heights of a whole chunk
+    private static final int BIOME_GRID_SIZE = 16 + SMOOTH_SIZE * 2;
+    private static final int CLIMATE_GRID_SIZE = BIOME_GRID_SIZE + 2;
+
+    private static final int X_SAMPLING = 4;
+    private static final int Y_SAMPLING = 8;
+    private static final int Z_SAMPLING = 4;
+
+    private final Map<String, Object> options;
+
+    private final List<Populator> populators = new ArrayList<>();
+    private final List<Populator> generationPopulators = new ArrayList<>();
+
+    private ChunkManager level;
+    private Random random;
+
+    private int waterHeight = 62;
+
+    private Simplex noiseBase;
+    private BiomeSelector selector;
+
+    //Generators are owned by a single worker, so these can be reused for every chunk
+    private double[] noise;
+    private final double[] noiseSamples = new double[(16 / X_SAMPLING + 1) * (128 / Y_SAMPLING + 1) * (16 / Z_SAMPLING + 1)];
+    private double[] temperatures;
+    private double[] rainfalls;
+    private final Biome[] biomeGrid = new Biome[BIOME_GRID_SIZE * BIOME_GRID_SIZE];
+
     public Normal() {
         this(new HashMap<>());
     }
 
     public Normal(Map<String, Object> options) {
-        //todo
+        this.options = options;
     }
 
-
     @Override
     public String getName() {
         return "normal";
@@ -30,26 +85,162 @@ public class Normal extends Generator {
 
     @Override
     public Map<String, Object> getSettings() {
-        return new HashMap<>();
+        return this.options;
     }
 
     @Override
     public void init(ChunkManager level, Random random) {
-        //todo
+        this.level = level;
+        this.random = random;
+        this.random.setSeed(this.level.getSeed());
+        this.noiseBase = new Simplex(this.random, 4, 1d / 4, 1d / 32);
+        this.random.setSeed(this.level.getSeed());
+        this.selector = new BiomeSelector(this.random, Biome.getBiome(Biome.OCEAN));
+
+        this.selector.addBiome(Biome.getBiome(Biome.OCEAN));
+        this.selector.addBiome(Biome.getBiome(Biome.PLAINS));
+        this.selector.addBiome(Biome.getBiome(Biome.DESERT));
+        this.selector.addBiome(Biome.getBiome(Biome.MOUNTAINS));
+        this.selector.addBiome(Biome.getBiome(Biome.FOREST));
+        this.selector.addBiome(Biome.getBiome(Biome.TAIGA));
+        this.selector.addBiome(Biome.getBiome(Biome.SWAMP));
+        this.selector.addBiome(Biome.getBiome(Biome.RIVER));
+        this.selector.addBiome(Biome.getBiome(Biome.ICE_PLAINS));
+        this.selector.addBiome(Biome.getBiome(Biome.SMALL_MOUNTAINS));
+        this.selector.addBiome(Biome.getBiome(Biome.BIRCH_FOREST));
+
+        this.selector.recalculate();
+
+        this.generationPopulators.add(new PopulatorGroundCover());
+
+        PopulatorOre ores = new PopulatorOre();
+        ores.setOreTypes(new OreType[]{
+                new OreType(new CoalOre(), 20, 16, 0, 128),
+                new OreType(new IronOre(), 20, 8, 0, 64),
+                new OreType(new RedstoneOre(), 8, 7, 0, 16),
+                new OreType(new LapisOre(), 1, 6, 0, 32),
+                new OreType(new GoldOre(), 2, 8, 0, 32),
+                new OreType(new DiamondOre(), 1, 7, 0, 16),
+                new OreType(new Dirt(), 20, 32, 0, 128),
+                new OreType(new Gravel(), 10, 16, 0, 128)
+        });
+        this.populators.add(ores);
+    }
+
+    /**
+     * Picks the biome of a block of the biome grid. Every block samples the climate at a pseudo random neighbour,
+     * which breaks up the straight biome borders. The climate grid has a one block margin for this.
+     */
+    private Biome pickBiome(int x, int z, int gx, int gz) {
+        long hash = x * 2345803L ^ z * 9236449L ^ this.level.getSeed();
+        hash *= hash + 223;
+        int xNoise = (int) (hash >> 20) & 3;
+        int zNoise = (int) (hash >> 22) & 3;
+        if (xNoise == 3) {
+            xNoise = 1;
+        }
+        if (zNoise == 3) {
+            zNoise = 1;
+        }
+
+        int index = (gx + xNoise) * CLIMATE_GRID_SIZE + gz + zNoise;
+        return this.selector.lookupBiome(this.temperatures[index], this.rainfalls[index]);
     }
 
     @Override
     public void generateChunk(int chunkX, int chunkZ) {
-        //todo
+        this.random.setSeed(0xdeadbeef ^ (chunkX << 8) ^ chunkZ ^ this.level.getSeed());
+
+        int baseX = chunkX << 4;
+        int baseZ = chunkZ << 4;
+
+        this.noise = Generator.getFastNoise3D(this.noiseBase, this.noise, this.noiseSamples, 16, 128, 16, X_SAMPLING, Y_SAMPLING, Z_SAMPLING, baseX, 0, baseZ);
+
+        int climateX = baseX - SMOOTH_SIZE - 1;
+        int climateZ = baseZ - SMOOTH_SIZE - 1;
+        this.temperatures = this.selector.getTemperatures(this.temperatures, climateX, climateZ, CLIMATE_GRID_SIZE, CLIMATE_GRID_SIZE);
+        this.rainfalls = this.selector.getRainfalls(this.rainfalls, climateX, climateZ, CLIMATE_GRID_SIZE, CLIMATE_GRID_SIZE);
+
+        for (int gx = 0; gx < BIOME_GRID_SIZE; ++gx) {
+            for (int gz = 0; gz < BIOME_GRID_SIZE; ++gz) {
+                this.biomeGrid[gx * BIOME_GRID_SIZE + gz] = this.pickBiome(baseX + gx - SMOOTH_SIZE, baseZ + gz - SMOOTH_SIZE, gx, gz);
+            }
+        }
+
+        BaseFullChunk chunk = this.level.getChunk(chunkX, chunkZ);
+
+        for (int x = 0; x < 16; ++x) {
+            for (int z = 0; z < 16; ++z) {
+                double minSum = 0;
+                double maxSum = 0;
+                double weightSum = 0;
+                double red = 0;
+                double green = 0;
+                double blue = 0;
+
+                Biome biome = this.biomeGrid[(x + SMOOTH_SIZE) * BIOME_GRID_SIZE + z + SMOOTH_SIZE];
+                chunk.setBiomeId(x, z, biome.getId());
+
+                for (int sx = 0; sx < SMOOTH_WIDTH; ++sx) {
+                    for (int sz = 0; sz < SMOOTH_WIDTH; ++sz) {
+                        double weight = GAUSSIAN_KERNEL[sx * SMOOTH_WIDTH + sz];
+                        Biome adjacent = this.biomeGrid[(x + sx) * BIOME_GRID_SIZE + z + sz];
+
+                        minSum += (adjacent.getMinElevation() - 1) * weight;
+                        maxSum += adjacent.getMaxElevation() * weight;
+
+                        int color = adjacent.getColor();
+                        int r = (color >> 16) & 0xff;
+                        int g = (color >> 8) & 0xff;
+                        int b = color & 0xff;
+                        red += r * r * weight;
+                        green += g * g * weight;
+                        blue += b * b * weight;
+
+                        weightSum += weight;
+                    }
+                }
+
+                minSum /= weightSum;
+                maxSum /= weightSum;
+
+                chunk.setBiomeColor(x, z, (int) Math.sqrt(red / weightSum), (int) Math.sqrt(green / weightSum), (int) Math.sqrt(blue / weightSum));
+
+                double smoothHeight = (maxSum - minSum) / 2;
+                int column = (x * 17 + z) * 129;
+
+                chunk.setBlockId(x, 0, z, Block.BEDROCK);
+                for (int y = 1; y < 128; ++y) {
+                    double noiseValue = this.noise[column + y] - 1 / smoothHeight * (y - smoothHeight - minSum);
+
+                    if (noiseValue > 0) {
+                        chunk.setBlockId(x, y, z, Block.STONE);
+                    } else if (y <= this.waterHeight) {
+                        chunk.setBlockId(x, y, z, Block.STILL_WATER);
+                    }
+                }
+            }
+        }
+
+        for (Populator populator : this.generationPopulators) {
+            populator.populate(this.level, chunkX, chunkZ, this.random);
+        }
     }
 
     @Override
     public void populateChunk(int chunkX, int chunkZ) {
-        //todo
+        this.random.setSeed(0xdeadbeef ^ (chunkX << 8) ^ chunkZ ^ this.level.getSeed());
+        for (Populator populator : this.populators) {
+            populator.populate(this.level, chunkX, chunkZ, this.random);
+        }
+
+        BaseFullChunk chunk = this.level.getChunk(chunkX, chunkZ);
+        Biome biome = Biome.getBiome(chunk.getBiomeId(7, 7));
+        biome.populateChunk(this.level, chunkX, chunkZ, this.random);
     }
 
     @Override
     public Vector3 getSpawn() {
-        return null;
+        return new Vector3(127.5, 128, 127.5);
     }
 }
@@ -0,0 +1,49 @@
+package cn.nukkit.level.generator.populator;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.level.ChunkManager;
+import cn.nukkit.level.format.FullChunk;
+import cn.nukkit.level.generator.biome.Biome;
+
+import java.util.Random;
+
+public class PopulatorGroundCover extends Populator {
+
+    @Override
+    public void populate(ChunkManager level, int chunkX, int chunkZ, Random random) {
+        FullChunk chunk = level.getChunk(chunkX, chunkZ);
+        if (chunk == null) {
+            return;
+        }
+
+        for (int x = 0; x < 16; ++x) {
+            for (int z = 0; z < 16; ++z) {
+                Block[] cover = Biome.getBiome(chunk.getBiomeId(x, z)).getGroundCover();
+                if (cover == null || cover.length == 0) {
+                    continue;
+                }
+
+                int diffY = cover[0].isSolid() ? 0 : 1;
+
+                int y;
+                for (y = 127; y > 0; --y) {
+                    int id = chunk.getBlockId(x, y, z);
+                    if (id != Block.AIR && !Block.transparent[id]) {
+                        break;
+                    }
+                }
+
+                int startY = Math.min(127, y + diffY);
+                int endY = startY - cover.length;
+                for (y = startY; y > endY && y >= 0; --y) {
+                    Block b = cover[startY - y];
+                    if (chunk.getBlockId(x, y, z) == Block.AIR && b.isSolid()) {
+                        break;
+                    }
+                    chunk.setBlockId(x, y, z, b.getId());
+                    chunk.setBlockData(x, y, z, b.getDamage());
+                }
+            }
+        }
+    }
+}
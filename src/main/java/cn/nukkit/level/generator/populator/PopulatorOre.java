@@ -20,7 +20,7 @@ public class PopulatorOre extends Populator {
             ObjectOre ore = new ObjectOre(random, type);
             for (int i = 0; i < ore.type.clusterCount; ++i) {
                 int x = NukkitMath.randomRange(random, chunkX << 4, (chunkX << 4) + 15);
-                int y = NukkitMath.randomRange(random, ore.type.maxHeight, ore.type.maxHeight);
+                int y = NukkitMath.randomRange(random, ore.type.minHeight, ore.type.maxHeight);
                 int z = NukkitMath.randomRange(random, chunkZ << 4, (chunkZ << 4) + 15);
                 if (ore.canPlaceObject(level, x, y, z)) {
                     ore.placeObject(level, x, y, z);
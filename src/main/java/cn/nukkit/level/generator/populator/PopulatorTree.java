@@ -13,7 +13,6 @@ import java.util.Random;
  * Nukkit Project
  */
 public class PopulatorTree extends Populator {
-    private ChunkManager level;
     private int randomAmount;
     private int baseAmount;
 
@@ -37,23 +36,22 @@ public class PopulatorTree extends Populator {
 
     @Override
     public void populate(ChunkManager level, int chunkX, int chunkZ, Random random) {
-        this.level = level;
         int amount = random.nextInt(this.randomAmount + 1) + this.baseAmount;
         for (int i = 0; i < amount; ++i) {
             int x = NukkitMath.randomRange(random, chunkX << 4, (chunkX << 4) + 15);
             int z = NukkitMath.randomRange(random, chunkZ << 4, (chunkZ << 4) + 15);
-            int y = this.getHighestWorkableBlock(x, z);
+            int y = this.getHighestWorkableBlock(level, x, z);
             if (y == -1) {
                 continue;
             }
-            ObjectTree.growTree(this.level, x, y, z, random, this.type);
+            ObjectTree.growTree(level, x, y, z, random, this.type);
         }
     }
 
-    private int getHighestWorkableBlock(int x, int z) {
+    private int getHighestWorkableBlock(ChunkManager level, int x, int z) {
         int y;
         for (y = 127; y > 0; --y) {
-            int b = this.level.getBlockIdAt(x, y, z);
+            int b = level.getBlockIdAt(x, y, z);
             if (b == Block.DIRT || b == Block.GRASS) {
                 break;
             } else if (b != 0 && b != Block.SNOW_LAYER) {
@@ -37,7 +37,8 @@ public class NukkitMath {
     }
 
     public static int randomRange(Random random, int start, int end) {
-        return start + (random.nextInt() % (end + 1 - start));
+        int bound = end + 1 - start;
+        return bound > 0 ? start + random.nextInt(bound) : start + (random.nextInt() & 0x7fffffff);
     }
 
     public static double round(double d) {
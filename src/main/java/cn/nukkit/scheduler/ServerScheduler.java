@@ -1,6 +1,7 @@
 package cn.nukkit.scheduler;
 
 import cn.nukkit.Server;
+import cn.nukkit.level.Level;
 import cn.nukkit.plugin.Plugin;
 import cn.nukkit.utils.PluginException;
 
@@ -58,7 +59,12 @@ public class ServerScheduler {
     }
 
     public void increaseAsyncTaskPoolSize(int newSize) {
+        int oldSize = this.asyncPool.getSize();
         this.asyncPool.increaseSize(newSize);
+        //Chunks of every level are generated on every worker, so the new ones need the generators too
+        for (Level level : Server.getInstance().getLevels().values()) {
+            level.registerGenerator(oldSize, this.asyncPool.getSize());
+        }
     }
 
     public TaskHandler scheduleDelayedTask(Task task, int delay) {
@@ -153,6 +153,7 @@ public class Chest extends Spawnable implements InventoryHolder, Container, Name
 
     @Override
     public void setName(String name) {
+        this.invalidateSpawnData();
         if (name == null || name.equals("")) {
             this.namedTag.remove("CustomName");
             return;
@@ -195,6 +196,8 @@ public class Chest extends Spawnable implements InventoryHolder, Container, Name
         this.namedTag.putInt("pairz", tile.z);
         tile.namedTag.putInt("pairx", this.x);
         tile.namedTag.putInt("pairz", this.z);
+        this.invalidateSpawnData();
+        tile.invalidateSpawnData();
     }
 
     public boolean unpair() {
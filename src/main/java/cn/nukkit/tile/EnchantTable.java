@@ -25,6 +25,7 @@ public class EnchantTable extends Spawnable implements Nameable {
 
     @Override
     public void setName(String name) {
+        this.invalidateSpawnData();
         if (name == null || name.equals("")) {
             this.namedTag.remove("CustomName");
             return;
@@ -21,6 +21,9 @@ public class Furnace extends Tile implements InventoryHolder, Container, Nameabl
 
     protected FurnaceInventory inventory;
 
+    //Server tick of the last update, to catch up on the burn time that passed while sleeping
+    private int lastTick = -1;
+
     public Furnace(FullChunk chunk, CompoundTag nbt) {
         super(chunk, nbt);
         this.inventory = new FurnaceInventory(this);
@@ -147,6 +150,7 @@ public class Furnace extends Tile implements InventoryHolder, Container, Nameabl
     protected void checkFuel(Item fuel) {
 
         FurnaceBurnEvent ev = new FurnaceBurnEvent(this, fuel, fuel.getFuelTime() == null ? 0 : fuel.getFuelTime());
+        this.server.getPluginManager().callEvent(ev);
 
         if (ev.isCancelled()) {
             return;
@@ -174,6 +178,15 @@ public class Furnace extends Tile implements InventoryHolder, Container, Nameabl
             return false;
         }
 
+        int currentTick = this.server.getTick();
+        int tickDiff = this.lastTick < 0 ? 1 : Math.max(1, currentTick - this.lastTick);
+        this.lastTick = currentTick;
+
+        //A furnace only sleeps while burning when it has nothing to cook, so only the fuel went on
+        if (tickDiff > 1 && this.namedTag.getShort("BurnTime") > 0) {
+            this.namedTag.putShort("BurnTime", Math.max(0, this.namedTag.getShort("BurnTime") - (tickDiff - 1)));
+        }
+
         boolean ret = false;
         Item fuel = this.inventory.getFuel();
         Item raw = this.inventory.getSmelting();
@@ -186,7 +199,7 @@ public class Furnace extends Tile implements InventoryHolder, Container, Nameabl
         }
 
         if (this.namedTag.getShort("BurnTime") > 0) {
-            this.namedTag.putShort("BurnTime", (this.namedTag.getShort("BurnTime") + 1));
+            this.namedTag.putShort("BurnTime", (this.namedTag.getShort("BurnTime") - 1));
             this.namedTag.putShort("BurnTicks", (int) Math.ceil((double) this.namedTag.getShort("BurnTime") / (double) this.namedTag.getShort("MaxTime") * 200d));
 
             if (smelt != null && canSmelt) {
@@ -214,7 +227,12 @@ public class Furnace extends Tile implements InventoryHolder, Container, Nameabl
             } else {
                 this.namedTag.putShort("CookTime", 0);
             }
-            ret = true;
+            //Tick on while cooking or watched, otherwise sleep until the fuel runs out or the inventory changes
+            if (canSmelt || !this.inventory.getViewers().isEmpty()) {
+                ret = true;
+            } else {
+                this.scheduleUpdate(Math.max(1, this.namedTag.getShort("BurnTime")));
+            }
         } else {
             if (this.getBlock().getId() == Item.BURNING_FURNACE) {
                 this.getLevel().setBlock(this, Block.get(Item.FURNACE, this.getBlock().getDamage()), true);
@@ -14,6 +14,10 @@ import java.nio.ByteOrder;
  * Nukkit Project
  */
 public abstract class Spawnable extends Tile {
+
+    //Little endian encoded spawn compound, null until encoded or after the spawn data changed
+    private byte[] spawnData = null;
+
     public Spawnable(FullChunk chunk, CompoundTag nbt) {
         super(chunk, nbt);
 
@@ -21,21 +25,39 @@ public abstract class Spawnable extends Tile {
 
     public abstract CompoundTag getSpawnCompound();
 
+    /**
+     * Returns the spawn compound encoded for the network, encoding it only the first time after it changed. The
+     * returned array is shared and must not be modified.
+     */
+    public byte[] getSpawnData() {
+        if (this.spawnData == null) {
+            try {
+                this.spawnData = NBTIO.write(this.getSpawnCompound(), ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return this.spawnData;
+    }
+
+    /**
+     * Drops the encoded spawn data. Must be called after changing anything {@link #getSpawnCompound()} reads, unless
+     * the change is followed by {@link #spawnToAll()}, which calls it.
+     */
+    public void invalidateSpawnData() {
+        this.spawnData = null;
+    }
+
     public void spawnTo(Player player) {
         if (this.closed) {
             return;
         }
 
-        CompoundTag tag = this.getSpawnCompound();
         BlockEntityDataPacket pk = new BlockEntityDataPacket();
         pk.x = this.x;
         pk.y = (byte) this.y;
         pk.z = this.z;
-        try {
-            pk.namedTag = NBTIO.write(tag, ByteOrder.LITTLE_ENDIAN);
-        } catch (IOException e) {
-            //ignore
-        }
+        pk.namedTag = this.getSpawnData();
         player.dataPacket(pk);
     }
 
@@ -44,6 +66,9 @@ public abstract class Spawnable extends Tile {
             return;
         }
 
+        this.invalidateSpawnData();
+        this.getLevel().clearChunkCache(this.chunk.getX(), this.chunk.getZ());
+
         for (Player player : this.getLevel().getChunkPlayers(this.chunk.getX(), this.chunk.getZ()).values()) {
             if (player.spawned) {
                 this.spawnTo(player);
@@ -105,6 +105,10 @@ public abstract class Tile extends Position {
         return this.level.getBlock(this);
     }
 
+    /**
+     * Updates the tile. Returning true keeps it updating every tick, returning false puts it to sleep until it is
+     * scheduled again.
+     */
     public boolean onUpdate() {
         return false;
     }
@@ -113,6 +117,17 @@ public abstract class Tile extends Position {
         this.level.updateTiles.put(this.id, this);
     }
 
+    /**
+     * Wakes the tile up after the given number of ticks.
+     */
+    public final void scheduleUpdate(int delay) {
+        if (delay <= 0) {
+            this.scheduleUpdate();
+        } else {
+            this.level.scheduleTileUpdate(this, delay);
+        }
+    }
+
 
     @Override
     protected void finalize() throws Throwable {
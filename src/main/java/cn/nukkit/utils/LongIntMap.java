@@ -0,0 +1,162 @@
+package cn.nukkit.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from primitive long keys to int values.
+ */
+public class LongIntMap {
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size = 0;
+
+    public LongIntMap() {
+        this(32);
+    }
+
+    /**
+     * Creates a map that holds the given number of entries without growing.
+     */
+    public LongIntMap(int capacity) {
+        int tableCapacity = 8;
+        while (tableCapacity < capacity << 1) {
+            tableCapacity <<= 1;
+        }
+        this.keys = new long[tableCapacity];
+        this.values = new int[tableCapacity];
+        this.used = new boolean[tableCapacity];
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        int mask = this.keys.length - 1;
+        for (int i = hash(key) & mask; this.used[i]; i = (i + 1) & mask) {
+            if (this.keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int get(long key, int defaultValue) {
+        int mask = this.keys.length - 1;
+        for (int i = hash(key) & mask; this.used[i]; i = (i + 1) & mask) {
+            if (this.keys[i] == key) {
+                return this.values[i];
+            }
+        }
+        return defaultValue;
+    }
+
+    public void put(long key, int value) {
+        int mask = this.keys.length - 1;
+        int i = hash(key) & mask;
+        while (this.used[i]) {
+            if (this.keys[i] == key) {
+                this.values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        if ((this.size + 1) << 1 > this.keys.length) {
+            this.resize(this.keys.length << 1);
+            this.put(key, value);
+            return;
+        }
+
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.used[i] = true;
+        ++this.size;
+    }
+
+    /**
+     * Removes a key and returns its value, or the default value if the key was not in the map.
+     */
+    public int remove(long key, int defaultValue) {
+        int mask = this.keys.length - 1;
+        int i = hash(key) & mask;
+        while (this.used[i] && this.keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (!this.used[i]) {
+            return defaultValue;
+        }
+
+        int value = this.values[i];
+        this.used[i] = false;
+        --this.size;
+
+        //Shift the following entries of the probe sequence back so lookups do not stop at the hole
+        int hole = i;
+        for (int j = (i + 1) & mask; this.used[j]; j = (j + 1) & mask) {
+            int home = hash(this.keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                this.keys[hole] = this.keys[j];
+                this.values[hole] = this.values[j];
+                this.used[hole] = true;
+                this.used[j] = false;
+                hole = j;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Removes all entries, keeping the capacity.
+     */
+    public void clear() {
+        Arrays.fill(this.used, false);
+        this.size = 0;
+    }
+
+    /**
+     * Copy of the keys, in no particular order.
+     */
+    public long[] keys() {
+        long[] keys = new long[this.size];
+        int n = 0;
+        for (int i = 0; i < this.keys.length; ++i) {
+            if (this.used[i]) {
+                keys[n++] = this.keys[i];
+            }
+        }
+        return keys;
+    }
+
+    private void resize(int capacity) {
+        long[] keys = this.keys;
+        int[] values = this.values;
+        boolean[] used = this.used;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.used = new boolean[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < keys.length; ++i) {
+            if (used[i]) {
+                int j = hash(keys[i]) & mask;
+                while (this.used[j]) {
+                    j = (j + 1) & mask;
+                }
+                this.keys[j] = keys[i];
+                this.values[j] = values[i];
+                this.used[j] = true;
+            }
+        }
+    }
+}
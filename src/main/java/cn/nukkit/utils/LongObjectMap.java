@@ -0,0 +1,274 @@
+package cn.nukkit.utils;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map from primitive long keys to objects, iterated in insertion order. Safe to modify while iterating.
+ */
+public class LongObjectMap<V> extends AbstractMap<Long, V> {
+
+    private static final int NONE = -1;
+
+    //Position of each key in the dense arrays
+    private LongIntMap table;
+
+    private long[] keys;
+    private Object[] values;
+    //Used positions of the dense arrays, including removed entries
+    private int used = 0;
+    private int size = 0;
+
+    private Values valuesView = null;
+    private EntrySet entrySetView = null;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    public LongObjectMap(int capacity) {
+        capacity = Math.max(capacity, 4);
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.table = new LongIntMap(capacity);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int position = this.table.get(key, NONE);
+        return position == NONE ? null : (V) this.values[position];
+    }
+
+    public boolean containsKey(long key) {
+        return this.table.containsKey(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("LongObjectMap does not allow null values");
+        }
+
+        int position = this.table.get(key, NONE);
+        if (position != NONE) {
+            V old = (V) this.values[position];
+            this.values[position] = value;
+            return old;
+        }
+
+        if (this.used == this.keys.length) {
+            this.rebuild();
+        }
+
+        this.keys[this.used] = key;
+        this.values[this.used] = value;
+        this.table.put(key, this.used);
+        ++this.used;
+        ++this.size;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int position = this.table.remove(key, NONE);
+        if (position == NONE) {
+            return null;
+        }
+
+        V old = (V) this.values[position];
+        this.values[position] = null;
+        --this.size;
+        return old;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Long ? this.get(((Long) key).longValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Long && this.containsKey(((Long) key).longValue());
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        return this.put(key.longValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Long ? this.remove(((Long) key).longValue()) : null;
+    }
+
+    @Override
+    public void clear() {
+        //New arrays, so running iterators keep their own
+        int capacity = Math.max(this.keys.length >> 2, 16);
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.table = new LongIntMap(capacity);
+        this.used = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Moves the entries into new dense arrays, dropping removed ones and growing if more than half are used.
+     */
+    private void rebuild() {
+        int capacity = this.keys.length;
+        if (this.size > capacity >> 1) {
+            capacity <<= 1;
+        }
+
+        long[] keys = new long[capacity];
+        Object[] values = new Object[capacity];
+
+        int n = 0;
+        for (int i = 0; i < this.used; ++i) {
+            if (this.values[i] != null) {
+                keys[n] = this.keys[i];
+                values[n] = this.values[i];
+                ++n;
+            }
+        }
+
+        this.keys = keys;
+        this.values = values;
+        this.used = n;
+
+        //Positions changed, so the table is filled again
+        this.table.clear();
+        for (int position = 0; position < n; ++position) {
+            this.table.put(keys[position], position);
+        }
+    }
+
+    @Override
+    public Collection<V> values() {
+        if (this.valuesView == null) {
+            this.valuesView = new Values();
+        }
+        return this.valuesView;
+    }
+
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        if (this.entrySetView == null) {
+            this.entrySetView = new EntrySet();
+        }
+        return this.entrySetView;
+    }
+
+    private abstract class DenseIterator<T> implements Iterator<T> {
+
+        private final long[] keys = LongObjectMap.this.keys;
+        private final Object[] values = LongObjectMap.this.values;
+        private final int limit = LongObjectMap.this.used;
+
+        private int next = 0;
+        private int last = NONE;
+
+        @Override
+        public boolean hasNext() {
+            while (this.next < this.limit) {
+                Object value = this.values[this.next];
+                //Arrays left behind by a rebuild still hold removed entries
+                if (value != null && (this.values == LongObjectMap.this.values || LongObjectMap.this.get(this.keys[this.next]) == value)) {
+                    return true;
+                }
+                ++this.next;
+            }
+            return false;
+        }
+
+        protected int nextPosition() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next++;
+            return this.last;
+        }
+
+        protected long keyAt(int position) {
+            return this.keys[position];
+        }
+
+        @SuppressWarnings("unchecked")
+        protected V valueAt(int position) {
+            return (V) this.values[position];
+        }
+
+        @Override
+        public void remove() {
+            if (this.last == NONE) {
+                throw new IllegalStateException();
+            }
+            LongObjectMap.this.remove(this.keys[this.last]);
+            this.last = NONE;
+        }
+    }
+
+    private class Values extends AbstractCollection<V> {
+
+        @Override
+        public Iterator<V> iterator() {
+            return new DenseIterator<V>() {
+                @Override
+                public V next() {
+                    return this.valueAt(this.nextPosition());
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return LongObjectMap.this.size;
+        }
+
+        @Override
+        public void clear() {
+            LongObjectMap.this.clear();
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<Long, V>> {
+
+        @Override
+        public Iterator<Entry<Long, V>> iterator() {
+            return new DenseIterator<Entry<Long, V>>() {
+                @Override
+                public Entry<Long, V> next() {
+                    int position = this.nextPosition();
+                    return new SimpleImmutableEntry<>(this.keyAt(position), this.valueAt(position));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return LongObjectMap.this.size;
+        }
+
+        @Override
+        public void clear() {
+            LongObjectMap.this.clear();
+        }
+    }
+}
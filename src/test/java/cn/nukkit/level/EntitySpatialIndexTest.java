@@ -0,0 +1,149 @@
+package cn.nukkit.level;
+
+import cn.nukkit.entity.DroppedItem;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.math.AxisAlignedBB;
+import cn.nukkit.math.Vector3;
+import org.junit.Assume;
+import org.junit.Test;
+import sun.misc.Unsafe;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EntitySpatialIndexTest {
+
+    @Test
+    public void visitsTheEntitiesIntersectingABox() throws Exception {
+        Random random = new Random(1);
+        EntitySpatialIndex index = new EntitySpatialIndex();
+        Entity[] entities = new Entity[500];
+        for (int i = 0; i < entities.length; ++i) {
+            entities[i] = entity(random.nextDouble() * 64 - 32, random.nextDouble() * 64, random.nextDouble() * 64 - 32);
+            index.add(entities[i]);
+        }
+        assertSameHits(index, entities, random);
+
+        for (int i = 0; i < entities.length; i += 2) {
+            Entity entity = entities[i];
+            move(entity, entity.x + random.nextDouble() * 16 - 8, entity.y + random.nextDouble() * 16 - 8, entity.z + random.nextDouble() * 16 - 8);
+            index.update(entity);
+        }
+        assertSameHits(index, entities, random);
+
+        for (int i = 0; i < entities.length; i += 3) {
+            index.remove(entities[i]);
+            entities[i] = null;
+        }
+        assertEquals(500 - 167, index.size());
+        assertSameHits(index, entities, random);
+    }
+
+    @Test
+    public void queriesWithAReusedVisitorDoNotAllocate() throws Exception {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+
+        Random random = new Random(2);
+        EntitySpatialIndex index = new EntitySpatialIndex();
+        for (int i = 0; i < 200; ++i) {
+            index.add(entity(random.nextDouble() * 64 - 32, random.nextDouble() * 16, random.nextDouble() * 64 - 32));
+        }
+
+        AxisAlignedBB bb = new AxisAlignedBB(0, 0, 0, 0, 0, 0);
+        Counter counter = new Counter();
+        query(index, bb, counter, 10000);
+        long thread = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(thread);
+        query(index, bb, counter, 10000);
+        long allocated = bean.getThreadAllocatedBytes(thread) - before;
+
+        //A callback allocated per query would take at least 16 bytes each
+        assertTrue("Queries allocated " + allocated + " bytes", allocated < 10000);
+        assertTrue(counter.count > 0);
+    }
+
+    @Test
+    public void breakingABlockReachesTheItemRestingOnIt() throws Exception {
+        EntitySpatialIndex index = new EntitySpatialIndex();
+        Entity item = entity(5.5, 65, 5.5);
+        index.add(item);
+
+        Set<Entity> notified = new HashSet<>();
+        index.forEachIntersecting(Level.getBlockChangeBox(new Vector3(5, 64, 5)), notified::add);
+        assertTrue(notified.contains(item));
+
+        notified.clear();
+        index.forEachIntersecting(Level.getBlockChangeBox(new Vector3(5, 62, 5)), notified::add);
+        assertTrue(notified.isEmpty());
+    }
+
+    private static void query(EntitySpatialIndex index, AxisAlignedBB bb, Counter counter, int queries) {
+        for (int i = 0; i < queries; ++i) {
+            double x = (i * 7 % 64) - 32;
+            double z = (i * 13 % 64) - 32;
+            bb.setBounds(x - 2, 0, z - 2, x + 2, 16, z + 2);
+            index.forEachIntersecting(bb, counter);
+        }
+    }
+
+    private static void assertSameHits(EntitySpatialIndex index, Entity[] entities, Random random) {
+        for (int i = 0; i < 200; ++i) {
+            double x = random.nextDouble() * 80 - 40;
+            double y = random.nextDouble() * 80 - 8;
+            double z = random.nextDouble() * 80 - 40;
+            double size = random.nextDouble() * 6;
+            AxisAlignedBB bb = new AxisAlignedBB(x, y, z, x + size, y + size, z + size);
+
+            Set<Entity> expected = new HashSet<>();
+            for (Entity entity : entities) {
+                if (entity != null && entity.boundingBox.intersectsWith(bb)) {
+                    expected.add(entity);
+                }
+            }
+
+            Set<Entity> found = new HashSet<>();
+            index.forEachIntersecting(bb, found::add);
+            assertEquals(expected, found);
+        }
+    }
+
+    //Entities can only be constructed in a chunk of a running server, the index only reads their position and box
+    private static Entity entity(double x, double y, double z) throws Exception {
+        Field field = Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        Entity entity = (Entity) ((Unsafe) field.get(null)).allocateInstance(DroppedItem.class);
+        entity.spatialCell = Long.MIN_VALUE;
+        entity.spatialSlot = -1;
+        entity.width = entity.length = entity.height = 0.25f;
+        entity.boundingBox = new AxisAlignedBB(0, 0, 0, 0, 0, 0);
+        move(entity, x, y, z);
+        return entity;
+    }
+
+    private static void move(Entity entity, double x, double y, double z) {
+        entity.x = x;
+        entity.y = y;
+        entity.z = z;
+        entity.boundingBox.setBounds(x - 0.125, y, z - 0.125, x + 0.125, y + 0.25, z + 0.125);
+    }
+
+    private static class Counter implements EntityVisitor {
+
+        private int count = 0;
+
+        @Override
+        public boolean visit(Entity entity) {
+            ++this.count;
+            return true;
+        }
+    }
+}
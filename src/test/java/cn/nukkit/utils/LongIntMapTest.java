@@ -0,0 +1,69 @@
+package cn.nukkit.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LongIntMapTest {
+
+    @Test
+    public void matchesAHashMapUnderRandomUpdates() {
+        Random random = new Random(1);
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100000; ++i) {
+            //Few distinct keys, so removals often shift colliding entries back
+            long key = random.nextInt(2000) * 0x100000000L + random.nextInt(4);
+            if (random.nextInt(3) == 0) {
+                Integer old = expected.remove(key);
+                assertEquals(old == null ? -1 : old, map.remove(key, -1));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), map.get(entry.getKey(), -1));
+        }
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(expected.keySet().stream().mapToLong(Long::longValue).sorted().toArray(), keys);
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(keys[0], -1));
+    }
+
+    @Test
+    public void objectMapKeepsInsertionOrderAcrossRebuilds() {
+        LongObjectMap<String> map = new LongObjectMap<>(4);
+        for (long key = 0; key < 100; ++key) {
+            map.put(key * 31, "v" + key);
+            if (key % 3 == 0) {
+                map.remove(key * 31);
+            }
+        }
+
+        long previous = -1;
+        int count = 0;
+        for (Map.Entry<Long, String> entry : map.entrySet()) {
+            long key = entry.getKey();
+            assertTrue(key > previous && (key / 31) % 3 != 0);
+            assertEquals("v" + key / 31, entry.getValue());
+            assertEquals(entry.getValue(), map.get(key));
+            previous = key;
+            ++count;
+        }
+        assertEquals(66, count);
+        assertEquals(66, map.size());
+    }
+}